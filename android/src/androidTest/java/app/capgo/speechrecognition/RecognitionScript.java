@@ -0,0 +1,137 @@
+package app.capgo.speechrecognition;
+
+import android.speech.SpeechRecognizer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Transcript script replayed by {@link ScriptedRecognitionService}.
+ *
+ * Each recognition session takes the next scripted session in order, wrapping around at the end.
+ * Every delay gets a uniform random jitter of up to {@code jitterMs} in either direction, and a
+ * session is replaced by {@code injectedError} with probability {@code errorRate}. Randomness comes
+ * from {@code seed}, so a script replays identically.
+ */
+final class RecognitionScript {
+
+    static final class Step {
+
+        static final String PARTIAL = "partial";
+        static final String RESULTS = "results";
+        static final String ERROR = "error";
+
+        final String type;
+        final String text;
+        final int error;
+        final long delayMs;
+
+        Step(String type, String text, int error, long delayMs) {
+            this.type = type;
+            this.text = text;
+            this.error = error;
+            this.delayMs = delayMs;
+        }
+    }
+
+    final long readyDelayMs;
+    final long stopDelayMs;
+    final long jitterMs;
+    final long seed;
+    final double errorRate;
+    final int injectedError;
+    final List<List<Step>> sessions;
+
+    private RecognitionScript(
+        long readyDelayMs,
+        long stopDelayMs,
+        long jitterMs,
+        long seed,
+        double errorRate,
+        int injectedError,
+        List<List<Step>> sessions
+    ) {
+        this.readyDelayMs = readyDelayMs;
+        this.stopDelayMs = stopDelayMs;
+        this.jitterMs = jitterMs;
+        this.seed = seed;
+        this.errorRate = errorRate;
+        this.injectedError = injectedError;
+        this.sessions = sessions;
+    }
+
+    static RecognitionScript parse(InputStream input) throws IOException, JSONException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        int read;
+        while ((read = input.read(chunk)) != -1) {
+            buffer.write(chunk, 0, read);
+        }
+        return parse(new JSONObject(new String(buffer.toByteArray(), StandardCharsets.UTF_8)));
+    }
+
+    static RecognitionScript parse(JSONObject json) throws JSONException {
+        JSONArray sessionsJson = json.getJSONArray("sessions");
+        List<List<Step>> sessions = new ArrayList<>();
+        for (int i = 0; i < sessionsJson.length(); i++) {
+            JSONArray stepsJson = sessionsJson.getJSONObject(i).getJSONArray("steps");
+            List<Step> steps = new ArrayList<>();
+            for (int j = 0; j < stepsJson.length(); j++) {
+                JSONObject step = stepsJson.getJSONObject(j);
+                String type = step.getString("type");
+                if (!Step.PARTIAL.equals(type) && !Step.RESULTS.equals(type) && !Step.ERROR.equals(type)) {
+                    throw new JSONException("Unknown step type: " + type);
+                }
+                steps.add(
+                    new Step(type, step.optString("text", ""), errorCode(step.optString("error", "CLIENT")), step.optLong("delayMs", 0))
+                );
+            }
+            sessions.add(Collections.unmodifiableList(steps));
+        }
+        if (sessions.isEmpty()) {
+            throw new JSONException("A recognition script needs at least one session");
+        }
+
+        return new RecognitionScript(
+            json.optLong("readyDelayMs", 0),
+            json.optLong("stopDelayMs", 0),
+            json.optLong("jitterMs", 0),
+            json.optLong("seed", 0),
+            json.optDouble("errorRate", 0),
+            errorCode(json.optString("injectedError", "SERVER")),
+            Collections.unmodifiableList(sessions)
+        );
+    }
+
+    private static int errorCode(String name) throws JSONException {
+        switch (name) {
+            case "AUDIO":
+                return SpeechRecognizer.ERROR_AUDIO;
+            case "CLIENT":
+                return SpeechRecognizer.ERROR_CLIENT;
+            case "NETWORK":
+                return SpeechRecognizer.ERROR_NETWORK;
+            case "NETWORK_TIMEOUT":
+                return SpeechRecognizer.ERROR_NETWORK_TIMEOUT;
+            case "NO_MATCH":
+                return SpeechRecognizer.ERROR_NO_MATCH;
+            case "RECOGNIZER_BUSY":
+                return SpeechRecognizer.ERROR_RECOGNIZER_BUSY;
+            case "SERVER":
+                return SpeechRecognizer.ERROR_SERVER;
+            case "SERVER_DISCONNECTED":
+                return SpeechRecognizer.ERROR_SERVER_DISCONNECTED;
+            case "SPEECH_TIMEOUT":
+                return SpeechRecognizer.ERROR_SPEECH_TIMEOUT;
+            default:
+                throw new JSONException("Unknown recognizer error: " + name);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package app.capgo.speechrecognition;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+/**
+ * Empty activity hosting the plugin in instrumented tests, since recognizers are created from the
+ * bridge's activity.
+ */
+public class ScriptedHostActivity extends AppCompatActivity {}
@@ -0,0 +1,197 @@
+package app.capgo.speechrecognition;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.speech.RecognitionService;
+import android.speech.SpeechRecognizer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.json.JSONException;
+
+/**
+ * Deterministic local stand-in for the system recognizer, for load and latency tests.
+ *
+ * It replays a {@link RecognitionScript} instead of listening to audio: the script comes from
+ * {@link #setScript} or, by default, the {@code scripted-recognition.json} test asset. Point the
+ * plugin at it with the {@code recognitionService} plugin setting, e.g.
+ * {@code app.capgo.speechrecognition.test/app.capgo.speechrecognition.ScriptedRecognitionService}.
+ */
+public class ScriptedRecognitionService extends RecognitionService {
+
+    static final String SCRIPT_ASSET = "scripted-recognition.json";
+
+    private interface Delivery {
+        void deliver(Callback callback) throws RemoteException;
+    }
+
+    private static volatile RecognitionScript scriptOverride;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private RecognitionScript assetScript;
+    private RecognitionScript activeScript;
+    private Random random;
+    private int nextSession = 0;
+
+    private Callback activeCallback;
+    private Object sessionToken;
+    private String lastPartial = "";
+    private String scriptedResult;
+
+    /**
+     * Replaces the script for every service instance in this process; {@code null} restores the
+     * test asset. Takes effect at the next {@code startListening}.
+     */
+    static void setScript(RecognitionScript script) {
+        scriptOverride = script;
+    }
+
+    @Override
+    protected void onStartListening(Intent recognizerIntent, Callback callback) {
+        endSession();
+        RecognitionScript script = script();
+        activeCallback = callback;
+        sessionToken = new Object();
+        lastPartial = "";
+        scriptedResult = null;
+
+        List<RecognitionScript.Step> steps = script.sessions.get(nextSession++ % script.sessions.size());
+        if (random.nextDouble() < script.errorRate) {
+            long delayMs = steps.isEmpty() ? 0 : steps.get(0).delayMs;
+            steps = Collections.singletonList(new RecognitionScript.Step(RecognitionScript.Step.ERROR, "", script.injectedError, delayMs));
+        }
+
+        long at = SystemClock.uptimeMillis() + jitter(script.readyDelayMs, script.jitterMs);
+        schedule(at, (cb) -> {
+            cb.readyForSpeech(new Bundle());
+            cb.beginningOfSpeech();
+        });
+        for (RecognitionScript.Step step : steps) {
+            at += jitter(step.delayMs, script.jitterMs);
+            if (RecognitionScript.Step.RESULTS.equals(step.type)) {
+                scriptedResult = step.text;
+            }
+            schedule(at, (cb) -> deliver(cb, step));
+        }
+    }
+
+    @Override
+    protected void onStopListening(Callback callback) {
+        if (callback != activeCallback || sessionToken == null) {
+            return;
+        }
+        // Like the system recognizer, stopping delivers the final results of what was heard so far.
+        handler.removeCallbacksAndMessages(sessionToken);
+        String text = scriptedResult != null ? scriptedResult : lastPartial;
+        RecognitionScript script = script();
+        schedule(SystemClock.uptimeMillis() + jitter(script.stopDelayMs, script.jitterMs), (cb) -> {
+            cb.endOfSpeech();
+            if (text.isEmpty()) {
+                cb.error(SpeechRecognizer.ERROR_NO_MATCH);
+            } else {
+                cb.results(results(text));
+            }
+            endSession();
+        });
+    }
+
+    @Override
+    protected void onCancel(Callback callback) {
+        if (callback == activeCallback) {
+            endSession();
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        endSession();
+        super.onDestroy();
+    }
+
+    private void deliver(Callback callback, RecognitionScript.Step step) throws RemoteException {
+        switch (step.type) {
+            case RecognitionScript.Step.PARTIAL:
+                lastPartial = step.text;
+                callback.partialResults(results(step.text));
+                break;
+            case RecognitionScript.Step.RESULTS:
+                callback.endOfSpeech();
+                callback.results(results(step.text));
+                endSession();
+                break;
+            default:
+                callback.error(step.error);
+                endSession();
+                break;
+        }
+    }
+
+    private void schedule(long uptimeMillis, Delivery delivery) {
+        Callback callback = activeCallback;
+        Object token = sessionToken;
+        handler.postAtTime(
+            () -> {
+                if (callback != activeCallback || token != sessionToken) {
+                    return;
+                }
+                try {
+                    delivery.deliver(callback);
+                } catch (RemoteException ex) {
+                    endSession();
+                }
+            },
+            token,
+            uptimeMillis
+        );
+    }
+
+    private void endSession() {
+        if (sessionToken != null) {
+            handler.removeCallbacksAndMessages(sessionToken);
+        }
+        sessionToken = null;
+        activeCallback = null;
+    }
+
+    private RecognitionScript script() {
+        RecognitionScript script = scriptOverride;
+        if (script == null) {
+            if (assetScript == null) {
+                try (InputStream input = getAssets().open(SCRIPT_ASSET)) {
+                    assetScript = RecognitionScript.parse(input);
+                } catch (IOException | JSONException ex) {
+                    throw new IllegalStateException("Unable to load " + SCRIPT_ASSET, ex);
+                }
+            }
+            script = assetScript;
+        }
+        if (script != activeScript) {
+            activeScript = script;
+            random = new Random(script.seed);
+            nextSession = 0;
+        }
+        return script;
+    }
+
+    private long jitter(long delayMs, long jitterMs) {
+        if (jitterMs <= 0) {
+            return delayMs;
+        }
+        return Math.max(0, delayMs + (long) ((random.nextDouble() * 2 - 1) * jitterMs));
+    }
+
+    private static Bundle results(String text) {
+        Bundle bundle = new Bundle();
+        ArrayList<String> matches = new ArrayList<>();
+        matches.add(text);
+        bundle.putStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION, matches);
+        return bundle;
+    }
+}
@@ -0,0 +1,200 @@
+package app.capgo.speechrecognition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.Manifest;
+import android.app.Instrumentation;
+import android.content.ComponentName;
+import android.os.Handler;
+import android.os.Looper;
+import android.webkit.WebView;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.rule.GrantPermissionRule;
+import com.getcapacitor.Bridge;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.MessageHandler;
+import com.getcapacitor.PermissionState;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginConfig;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Starts sessions through {@link SpeechRecognitionPlugin} with {@code recognitionService} pointing at
+ * {@link ScriptedRecognitionService}, so every session crosses the real recognizer IPC path, and
+ * reports the sustained session rate and start-to-final latency seen by JS.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScriptedRecognitionServiceTest {
+
+    private static final int SESSIONS = 100;
+    private static final long SESSION_TIMEOUT_MS = 5000;
+    private static final String FINAL_TEXT = "scripted speech result";
+    private static final String SCRIPT =
+        "{\"readyDelayMs\":5,\"sessions\":[{\"steps\":[" +
+        "{\"type\":\"partial\",\"text\":\"scripted\",\"delayMs\":5}," +
+        "{\"type\":\"partial\",\"text\":\"scripted speech\",\"delayMs\":5}," +
+        "{\"type\":\"results\",\"text\":\"" +
+        FINAL_TEXT +
+        "\",\"delayMs\":5}]}]}";
+
+    @Rule
+    public GrantPermissionRule recordAudio = GrantPermissionRule.grant(Manifest.permission.RECORD_AUDIO);
+
+    private Instrumentation instrumentation;
+    private ActivityScenario<ScriptedHostActivity> scenario;
+    private HarnessPlugin plugin;
+    private MessageHandler messageHandler;
+    private int callbackId = 0;
+
+    @Before
+    public void setUp() throws Exception {
+        ScriptedRecognitionService.setScript(RecognitionScript.parse(new JSONObject(SCRIPT)));
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        AppCompatActivity[] activity = new AppCompatActivity[1];
+        scenario = ActivityScenario.launch(ScriptedHostActivity.class);
+        scenario.onActivity((launched) -> activity[0] = launched);
+
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        WebView webView = mock(WebView.class);
+        when(webView.post(any())).thenAnswer((invocation) -> mainHandler.post(invocation.getArgument(0)));
+        Bridge bridge = mock(Bridge.class);
+        when(bridge.getContext()).thenReturn(activity[0]);
+        when(bridge.getActivity()).thenReturn(activity[0]);
+        when(bridge.getWebView()).thenReturn(webView);
+
+        messageHandler = mock(MessageHandler.class);
+
+        String service = new ComponentName(instrumentation.getContext(), ScriptedRecognitionService.class).flattenToString();
+        plugin = new HarnessPlugin(service);
+        plugin.setBridge(bridge);
+        instrumentation.runOnMainSync(plugin::load);
+    }
+
+    @After
+    public void tearDown() {
+        if (plugin != null) {
+            instrumentation.runOnMainSync(plugin::handleOnDestroy);
+        }
+        if (scenario != null) {
+            scenario.close();
+        }
+        ScriptedRecognitionService.setScript(null);
+    }
+
+    @Test
+    public void replaysScriptedSessionsThroughThePlugin() throws Exception {
+        long[] latenciesNanos = new long[SESSIONS];
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < SESSIONS; i++) {
+            plugin.expectSession();
+            long sessionStartedAt = System.nanoTime();
+            plugin.start(call("start", new JSObject().put("partialResults", true)));
+            assertTrue("Session " + i + " did not stop", plugin.sessionStopped.await(SESSION_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            latenciesNanos[i] = plugin.finalResultAt - sessionStartedAt;
+
+            List<String> partials = new ArrayList<>();
+            String stopReason = null;
+            for (Event event : plugin.events) {
+                if (Constants.PARTIAL_RESULTS_EVENT.equals(event.name) && event.firstMatch != null) {
+                    partials.add(event.firstMatch);
+                } else if (Constants.LISTENING_EVENT.equals(event.name) && "stopped".equals(event.state)) {
+                    stopReason = event.reason;
+                }
+            }
+            assertEquals("Session " + i + " stop reason", "results", stopReason);
+            assertEquals("Session " + i + " partial results", Arrays.asList("scripted", "scripted speech", FINAL_TEXT), partials);
+        }
+        double elapsedMs = (System.nanoTime() - startedAt) / 1_000_000.0;
+
+        Arrays.sort(latenciesNanos);
+        System.out.printf(
+            Locale.US,
+            "Scripted recognition service: %d plugin sessions in %.1f ms (%.1f sessions/s), start to final p50 %.1f ms, p95 %.1f ms%n",
+            SESSIONS,
+            elapsedMs,
+            SESSIONS / (elapsedMs / 1000.0),
+            latenciesNanos[SESSIONS / 2] / 1_000_000.0,
+            latenciesNanos[SESSIONS * 95 / 100] / 1_000_000.0
+        );
+    }
+
+    private PluginCall call(String methodName, JSObject data) {
+        return new PluginCall(messageHandler, "SpeechRecognition", Integer.toString(++callbackId), methodName, data);
+    }
+
+    private static final class Event {
+
+        final String name;
+        final String state;
+        final String reason;
+        final String firstMatch;
+
+        Event(String name, JSObject data) {
+            this.name = name;
+            this.state = data.optString("state", null);
+            this.reason = data.optString("reason", null);
+            JSONArray matches = data.optJSONArray("matches");
+            this.firstMatch = matches == null ? null : matches.optString(0, null);
+        }
+    }
+
+    private static final class HarnessPlugin extends SpeechRecognitionPlugin {
+
+        final ConcurrentLinkedQueue<Event> events = new ConcurrentLinkedQueue<>();
+        volatile CountDownLatch sessionStopped;
+        volatile long finalResultAt;
+        private final PluginConfig config = mock(PluginConfig.class);
+
+        HarnessPlugin(String recognitionService) {
+            when(config.getString("recognitionService", null)).thenReturn(recognitionService);
+        }
+
+        void expectSession() {
+            events.clear();
+            finalResultAt = 0;
+            sessionStopped = new CountDownLatch(1);
+        }
+
+        @Override
+        public PluginConfig getConfig() {
+            return config;
+        }
+
+        @Override
+        public PermissionState getPermissionState(String alias) {
+            return PermissionState.GRANTED;
+        }
+
+        @Override
+        protected void notifyListeners(String eventName, JSObject data) {
+            Event event = new Event(eventName, data);
+            if (FINAL_TEXT.equals(event.firstMatch)) {
+                finalResultAt = System.nanoTime();
+            }
+            events.add(event);
+            if (Constants.LISTENING_EVENT.equals(eventName) && "stopped".equals(event.state)) {
+                sessionStopped.countDown();
+            }
+        }
+    }
+}
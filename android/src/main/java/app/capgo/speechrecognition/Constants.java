@@ -14,7 +14,11 @@ public interface Constants {
     String PARTIAL_RESULTS_EVENT = "partialResults";
     String ERROR_EVENT = "error";
     String READY_FOR_NEXT_SESSION_EVENT = "readyForNextSession";
+    String VOLUME_CHANGED_EVENT = "volumeChanged";
+    String FILE_TRANSCRIPTION_PROGRESS_EVENT = "fileTranscriptionProgress";
+    String FILE_TRANSCRIPTION_RESULT_EVENT = "fileTranscriptionResult";
     String RECORD_AUDIO_PERMISSION = Manifest.permission.RECORD_AUDIO;
     String LANGUAGE_ERROR = "Could not get list of languages";
+    String LANGUAGE_DETAILS_PACKAGE = "com.google.android.googlequicksearchbox";
     String EXTRA_DICTATE_BEEP = "android.speech.extra.DICTATE_BEEP";
 }
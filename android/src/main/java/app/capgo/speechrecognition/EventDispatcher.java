@@ -0,0 +1,88 @@
+package app.capgo.speechrecognition;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Logger;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONException;
+
+/**
+ * Builds and delivers plugin events on a dedicated background thread.
+ *
+ * Recognizer callbacks run on the main thread, so they only capture the values an event needs and
+ * hand them over here; building the {@link JSObject} and serializing it for the WebView happens off
+ * the main thread. A single thread delivers everything, which keeps events in the order they were
+ * dispatched.
+ */
+class EventDispatcher {
+
+    private static final String TAG = "SpeechRecognition";
+
+    interface PayloadBuilder {
+        JSObject build() throws JSONException;
+    }
+
+    interface Sink {
+        void deliver(String eventName, JSObject payload);
+    }
+
+    private final Sink sink;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor((runnable) -> {
+        Thread thread = new Thread(runnable, "SpeechRecognitionEvents");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    EventDispatcher(Sink sink) {
+        this.sink = sink;
+    }
+
+    void dispatch(String eventName, PayloadBuilder payloadBuilder) {
+        run(() -> {
+            JSObject payload;
+            try {
+                payload = payloadBuilder.build();
+            } catch (JSONException ex) {
+                Logger.error(TAG, "Failed to build " + eventName + " event", ex);
+                return;
+            }
+            sink.deliver(eventName, payload);
+        });
+    }
+
+    /**
+     * Runs {@code task} after every event dispatched so far, e.g. resolving a call that must not
+     * overtake the events emitted before it.
+     */
+    void run(Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception ex) {
+                    Logger.error(TAG, "Failed to deliver speech recognition event", ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            Logger.warn(TAG, "Dropping speech recognition event after shutdown");
+        }
+    }
+
+    /**
+     * Blocks until every event dispatched so far has been delivered, or {@code timeoutMs} elapses.
+     *
+     * @return {@code false} on timeout
+     */
+    boolean awaitDelivered(long timeoutMs) throws InterruptedException {
+        CountDownLatch delivered = new CountDownLatch(1);
+        run(delivered::countDown);
+        return delivered.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,663 @@
+package app.capgo.speechrecognition;
+
+import static app.capgo.speechrecognition.Constants.FILE_TRANSCRIPTION_PROGRESS_EVENT;
+import static app.capgo.speechrecognition.Constants.FILE_TRANSCRIPTION_RESULT_EVENT;
+
+import android.content.Context;
+import android.content.Intent;
+import android.media.AudioFormat;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.speech.RecognitionListener;
+import android.speech.RecognizerIntent;
+import android.speech.SpeechRecognizer;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Logger;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transcribes recorded audio files through {@link RecognizerIntent#EXTRA_AUDIO_SOURCE} (API 33+).
+ *
+ * Every job is transcribed as one or more chunks; with {@code splitAtSilence} the file is scanned
+ * once by a {@link SilenceSplitter} and cut at pauses, so the chunks of a long recording run in
+ * parallel and their transcripts are stitched back together in order. At most {@code concurrency}
+ * chunks run at a time, each on its own {@link SpeechRecognizer}. A worker thread converts a chunk's
+ * audio to 16 kHz mono PCM with a {@link PcmConverter} and pumps it into a pipe the recognizer reads
+ * from, which also drives the progress events.
+ *
+ * Recognizers and the queue itself are only touched on the main thread, apart from {@link #enqueue}.
+ */
+class FileTranscriptionQueue {
+
+    private static final String TAG = "SpeechRecognition";
+    private static final int PUMP_BUFFER_SIZE = 16 * 1024;
+    private static final double PROGRESS_STEP = 0.05;
+    /**
+     * How long a chunk may go without the pump making progress, or, once all its audio is in the pipe,
+     * without the recognizer finishing, before it is ended.
+     */
+    private static final int COMPLETION_TIMEOUT_MS = 15000;
+    private static final int MIN_SILENCE_MS = 300;
+
+    static final class Options {
+
+        final String language;
+        final int maxResults;
+        final boolean onDevice;
+        final boolean splitAtSilence;
+        final int maxChunkMs;
+        final double silenceThresholdDb;
+
+        Options(String language, int maxResults, boolean onDevice, boolean splitAtSilence, int maxChunkMs, double silenceThresholdDb) {
+            this.language = language;
+            this.maxResults = maxResults;
+            this.onDevice = onDevice;
+            this.splitAtSilence = splitAtSilence;
+            this.maxChunkMs = maxChunkMs;
+            this.silenceThresholdDb = silenceThresholdDb;
+        }
+    }
+
+    private static final class Job {
+
+        final long id;
+        final String source;
+        final Options options;
+        final AtomicLong bytesPumped = new AtomicLong();
+        WavHeader header;
+        String[] chunkTexts;
+        ArrayList<String> lastMatches;
+        int lastMatchesChunk = -1;
+        int remainingChunks;
+        int failedChunks;
+        String errorCode;
+        String errorMessage;
+        volatile double reportedProgress = 0;
+
+        Job(long id, String source, Options options) {
+            this.id = id;
+            this.source = source;
+            this.options = options;
+        }
+    }
+
+    private final class Chunk implements RecognitionListener {
+
+        final Job job;
+        final int index;
+        final long start;
+        /**
+         * End offset in the PCM data, or {@code -1} to read until the end of the stream.
+         */
+        final long end;
+        final StringBuilder transcript = new StringBuilder();
+        SpeechRecognizer recognizer;
+        InputStream input;
+        ParcelFileDescriptor pipeWriteSide;
+        ArrayList<String> lastMatches;
+        volatile boolean finished = false;
+        volatile boolean pumped = false;
+        volatile long lastProgressAt;
+        Runnable watchdog;
+
+        Chunk(Job job, int index, long start, long end) {
+            this.job = job;
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public void onReadyForSpeech(Bundle params) {}
+
+        @Override
+        public void onBeginningOfSpeech() {}
+
+        @Override
+        public void onRmsChanged(float rmsdB) {}
+
+        @Override
+        public void onBufferReceived(byte[] buffer) {}
+
+        @Override
+        public void onEndOfSpeech() {}
+
+        @Override
+        public void onError(int error) {
+            boolean noSpeech = error == SpeechRecognizer.ERROR_NO_MATCH || error == SpeechRecognizer.ERROR_SPEECH_TIMEOUT;
+            if (noSpeech || transcript.length() > 0) {
+                // The end of the audio often surfaces as "no match" once everything before it was recognized.
+                finishChunk(this, null, null);
+            } else {
+                finishChunk(this, "RECOGNITION_FAILED", "Recognizer error " + error);
+            }
+        }
+
+        @Override
+        public void onResults(Bundle results) {
+            appendTopMatch(results);
+            finishChunk(this, null, null);
+        }
+
+        @Override
+        public void onPartialResults(Bundle partialResults) {}
+
+        @Override
+        public void onSegmentResults(Bundle segmentResults) {
+            appendTopMatch(segmentResults);
+        }
+
+        @Override
+        public void onEndOfSegmentedSession() {
+            finishChunk(this, null, null);
+        }
+
+        @Override
+        public void onEvent(int eventType, Bundle params) {}
+
+        private void appendTopMatch(Bundle results) {
+            ArrayList<String> matches = results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
+            if (matches == null || matches.isEmpty() || matches.get(0) == null || matches.get(0).trim().isEmpty()) {
+                return;
+            }
+            lastMatches = matches;
+            if (transcript.length() > 0) {
+                transcript.append(' ');
+            }
+            transcript.append(matches.get(0).trim());
+        }
+    }
+
+    private final Context context;
+    private final RecognizerPool.Factory recognizerFactory;
+    private final EventDispatcher eventDispatcher;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ExecutorService workers = Executors.newCachedThreadPool((runnable) -> {
+        Thread thread = new Thread(runnable, "SpeechFileTranscription");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong nextJobId = new AtomicLong(1);
+    private final ArrayDeque<Job> queued = new ArrayDeque<>();
+    private final ArrayDeque<Chunk> pendingChunks = new ArrayDeque<>();
+    private final ArrayList<Chunk> running = new ArrayList<>();
+    private boolean preparing = false;
+    private int concurrency = 1;
+    // Worker continuations may still be posted after shutdown(); they must not touch the executor.
+    private volatile boolean shutdown = false;
+
+    FileTranscriptionQueue(Context context, RecognizerPool.Factory recognizerFactory, EventDispatcher eventDispatcher) {
+        this.context = context;
+        this.recognizerFactory = recognizerFactory;
+        this.eventDispatcher = eventDispatcher;
+    }
+
+    /**
+     * Queues one job per source (a file path, {@code file://} or {@code content://} URI) and returns
+     * their ids. {@code concurrency} applies to the whole queue from now on.
+     */
+    List<Long> enqueue(List<String> sources, Options options, int concurrency) {
+        ArrayList<Job> jobs = new ArrayList<>(sources.size());
+        ArrayList<Long> ids = new ArrayList<>(sources.size());
+        for (String source : sources) {
+            Job job = new Job(nextJobId.getAndIncrement(), source, options);
+            jobs.add(job);
+            ids.add(job.id);
+        }
+        handler.post(() -> {
+            if (shutdown) {
+                return;
+            }
+            this.concurrency = concurrency;
+            queued.addAll(jobs);
+            for (Job job : jobs) {
+                emitProgress(job, "queued", 0);
+            }
+            startNext();
+        });
+        return ids;
+    }
+
+    /**
+     * Cancels every queued and running job without emitting results.
+     */
+    void shutdown() {
+        handler.post(() -> {
+            shutdown = true;
+            queued.clear();
+            pendingChunks.clear();
+            for (Chunk chunk : running) {
+                chunk.finished = true;
+                release(chunk);
+            }
+            running.clear();
+            workers.shutdownNow();
+        });
+    }
+
+    private void startNext() {
+        while (!shutdown && running.size() < concurrency) {
+            Chunk chunk = pendingChunks.pollFirst();
+            if (chunk != null) {
+                running.add(chunk);
+                workers.execute(() -> openChunk(chunk));
+            } else if (!preparing && !queued.isEmpty()) {
+                // Split one job at a time; its chunks fill the free slots once the scan is done.
+                preparing = true;
+                Job job = queued.pollFirst();
+                workers.execute(() -> prepare(job));
+                return;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Worker thread: reads the header and, with {@code splitAtSilence}, scans the audio once for chunk
+     * boundaries.
+     */
+    private void prepare(Job job) {
+        long[] boundaries;
+        try (InputStream input = openSource(job.source)) {
+            job.header = WavHeader.read(input);
+            if (!PcmConverter.isSupported(job.header)) {
+                throw new IOException("Only PCM and 32-bit float WAVE files are supported.");
+            }
+            boundaries = job.options.splitAtSilence ? scanForPauses(job, input) : new long[] { 0, job.header.dataLength };
+        } catch (IOException | RuntimeException ex) {
+            Logger.warn(TAG, "Unable to open " + job.source + ": " + ex.getMessage());
+            handler.post(() -> {
+                if (shutdown) {
+                    return;
+                }
+                preparing = false;
+                job.errorCode = "UNSUPPORTED_SOURCE";
+                job.errorMessage = ex.getMessage();
+                finishJob(job);
+                startNext();
+            });
+            return;
+        }
+
+        handler.post(() -> {
+            if (shutdown) {
+                return;
+            }
+            preparing = false;
+            int count = boundaries.length - 1;
+            job.chunkTexts = new String[count];
+            job.remainingChunks = count;
+            for (int i = 0; i < count; i++) {
+                pendingChunks.addLast(new Chunk(job, i, boundaries[i], boundaries[i + 1]));
+            }
+            if (count == 0) {
+                // No audio at all.
+                finishJob(job);
+            } else {
+                emitProgress(job, "running", 0);
+            }
+            startNext();
+        });
+    }
+
+    /**
+     * Scans the audio as mono 16-bit PCM at its own rate and maps the cuts back to offsets in the file's
+     * data.
+     */
+    private long[] scanForPauses(Job job, InputStream input) throws IOException {
+        WavHeader header = job.header;
+        SilenceSplitter splitter = new SilenceSplitter(
+            header.sampleRate,
+            1,
+            job.options.maxChunkMs / 3,
+            job.options.maxChunkMs,
+            MIN_SILENCE_MS,
+            job.options.silenceThresholdDb
+        );
+        PcmConverter converter = new PcmConverter(header, header.sampleRate);
+        ReadableByteChannel source = Channels.newChannel(input);
+        ByteBuffer in = ByteBuffer.allocate(PUMP_BUFFER_SIZE);
+        ByteBuffer out = ByteBuffer.allocate(PUMP_BUFFER_SIZE);
+        long remaining = header.dataLength;
+        // Blocking file reads ignore shutdownNow(), so a long scan checks the flag itself.
+        while (remaining != 0 && !shutdown) {
+            if (remaining > 0 && in.remaining() > remaining) {
+                in.limit(in.position() + (int) remaining);
+            }
+            int read = source.read(in);
+            if (read < 0) {
+                break;
+            }
+            if (remaining > 0) {
+                remaining -= read;
+            }
+            in.flip();
+            do {
+                converter.convert(in, out);
+                splitter.feed(out.array(), 0, out.position());
+                out.clear();
+            } while (in.remaining() >= converter.inputBytesPerFrame());
+            in.compact();
+        }
+
+        return SilenceSplitter.toSourceOffsets(splitter.finish(), header.bytesPerFrame());
+    }
+
+    /**
+     * Worker thread: opens the source at the chunk's first sample, then hands over to the main thread.
+     */
+    private void openChunk(Chunk chunk) {
+        try {
+            chunk.input = openSource(chunk.job.source);
+            WavHeader.read(chunk.input);
+            skipFully(chunk.input, chunk.start);
+            ParcelFileDescriptor[] pipe = ParcelFileDescriptor.createPipe();
+            chunk.pipeWriteSide = pipe[1];
+            handler.post(() -> startRecognizer(chunk, pipe[0]));
+        } catch (IOException | RuntimeException ex) {
+            Logger.warn(TAG, "Unable to open " + chunk.job.source + ": " + ex.getMessage());
+            closeQuietly(chunk.input);
+            handler.post(() -> finishChunk(chunk, "UNSUPPORTED_SOURCE", ex.getMessage()));
+        }
+    }
+
+    private InputStream openSource(String source) throws IOException {
+        if (source.startsWith("content://")) {
+            InputStream input = context.getContentResolver().openInputStream(Uri.parse(source));
+            if (input == null) {
+                throw new IOException("Unable to open " + source);
+            }
+            return input;
+        }
+        String path = source.startsWith("file://") ? Uri.parse(source).getPath() : source;
+        return new FileInputStream(path);
+    }
+
+    private void startRecognizer(Chunk chunk, ParcelFileDescriptor pipeReadSide) {
+        try {
+            if (chunk.finished) {
+                closeQuietly(chunk.input);
+                closeQuietly(chunk.pipeWriteSide);
+                return;
+            }
+            chunk.recognizer = recognizerFactory.create(chunk.job.options.onDevice);
+            chunk.recognizer.setRecognitionListener(chunk);
+            chunk.recognizer.startListening(buildIntent(chunk.job, pipeReadSide));
+            armWatchdog(chunk);
+            workers.execute(() -> pump(chunk));
+        } catch (Exception ex) {
+            Logger.error(TAG, "Unable to start file transcription", ex);
+            finishChunk(chunk, "START_FAILED", ex.getMessage());
+        } finally {
+            // The recognizer service holds its own duplicate of the read side once the intent is sent.
+            closeQuietly(pipeReadSide);
+        }
+    }
+
+    private Intent buildIntent(Job job, ParcelFileDescriptor pipeReadSide) {
+        Intent intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
+        intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM);
+        intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE, job.options.language);
+        intent.putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, job.options.maxResults);
+        intent.putExtra(RecognizerIntent.EXTRA_CALLING_PACKAGE, context.getPackageName());
+        intent.putExtra(RecognizerIntent.EXTRA_SEGMENTED_SESSION, true);
+        intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE, pipeReadSide);
+        intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_ENCODING, AudioFormat.ENCODING_PCM_16BIT);
+        intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_SAMPLING_RATE, PcmConverter.TARGET_SAMPLE_RATE);
+        intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_CHANNEL_COUNT, 1);
+        if (job.options.onDevice) {
+            intent.putExtra(RecognizerIntent.EXTRA_PREFER_OFFLINE, true);
+        }
+        return intent;
+    }
+
+    /**
+     * Ends the chunk once it has gone {@link #COMPLETION_TIMEOUT_MS} without progress. A recognizer that
+     * stops reading leaves the pump blocked on a full pipe; finishing the chunk closes the pipe, which
+     * unblocks it.
+     */
+    private void armWatchdog(Chunk chunk) {
+        chunk.lastProgressAt = SystemClock.elapsedRealtime();
+        chunk.watchdog = new Runnable() {
+            @Override
+            public void run() {
+                if (chunk.finished) {
+                    return;
+                }
+                long idleMs = SystemClock.elapsedRealtime() - chunk.lastProgressAt;
+                if (idleMs < COMPLETION_TIMEOUT_MS) {
+                    handler.postDelayed(this, COMPLETION_TIMEOUT_MS - idleMs);
+                } else if (!chunk.pumped) {
+                    finishChunk(chunk, "TIMEOUT", "The recognizer stopped reading the file.");
+                } else if (chunk.transcript.length() > 0) {
+                    finishChunk(chunk, null, null);
+                } else {
+                    finishChunk(chunk, "TIMEOUT", "The recognizer did not return results for the whole file.");
+                }
+            }
+        };
+        handler.postDelayed(chunk.watchdog, COMPLETION_TIMEOUT_MS);
+    }
+
+    /**
+     * Worker thread: converts the chunk's audio to 16 kHz mono PCM and writes it into the recognizer's
+     * pipe, through two fixed-size direct buffers. Closing the pipe marks the end of the audio; the
+     * recognizer then finishes on its own, or the watchdog ends the chunk.
+     */
+    private void pump(Chunk chunk) {
+        Job job = chunk.job;
+        PcmConverter converter = new PcmConverter(job.header, PcmConverter.TARGET_SAMPLE_RATE);
+        ByteBuffer in = ByteBuffer.allocateDirect(PUMP_BUFFER_SIZE);
+        ByteBuffer out = ByteBuffer.allocateDirect(PUMP_BUFFER_SIZE);
+        long remaining = chunk.end < 0 ? -1 : chunk.end - chunk.start;
+        try (
+            ReadableByteChannel source = Channels.newChannel(chunk.input);
+            FileOutputStream pipe = new ParcelFileDescriptor.AutoCloseOutputStream(chunk.pipeWriteSide);
+            FileChannel sink = pipe.getChannel()
+        ) {
+            while (!chunk.finished && remaining != 0) {
+                if (remaining > 0 && in.remaining() > remaining) {
+                    in.limit(in.position() + (int) remaining);
+                }
+                int read = source.read(in);
+                if (read < 0) {
+                    break;
+                }
+                if (remaining > 0) {
+                    remaining -= read;
+                }
+                in.flip();
+                do {
+                    converter.convert(in, out);
+                    writeFully(sink, out);
+                } while (in.remaining() >= converter.inputBytesPerFrame());
+                in.compact();
+                chunk.lastProgressAt = SystemClock.elapsedRealtime();
+                reportProgress(job, job.bytesPumped.addAndGet(read));
+            }
+            boolean drained;
+            do {
+                drained = converter.finish(out);
+                writeFully(sink, out);
+            } while (!drained && !chunk.finished);
+        } catch (IOException ex) {
+            // The recognizer closed its end early; its callbacks decide how the chunk ends.
+            Logger.debug(TAG, "File transcription pipe closed: " + ex.getMessage());
+        }
+        // From here on the watchdog waits for the recognizer to finish.
+        chunk.lastProgressAt = SystemClock.elapsedRealtime();
+        chunk.pumped = true;
+    }
+
+    private void reportProgress(Job job, long pumped) {
+        long total = job.header.dataLength;
+        if (total <= 0) {
+            return;
+        }
+        double progress = Math.min(1, (double) pumped / total);
+        synchronized (job) {
+            if (progress - job.reportedProgress < PROGRESS_STEP && progress < 1) {
+                return;
+            }
+            job.reportedProgress = progress;
+        }
+        emitProgress(job, "running", progress);
+    }
+
+    private void finishChunk(Chunk chunk, String errorCode, String message) {
+        if (chunk.finished) {
+            return;
+        }
+        chunk.finished = true;
+        release(chunk);
+        running.remove(chunk);
+
+        Job job = chunk.job;
+        job.chunkTexts[chunk.index] = chunk.transcript.toString();
+        if (chunk.lastMatches != null && chunk.index > job.lastMatchesChunk) {
+            job.lastMatches = chunk.lastMatches;
+            job.lastMatchesChunk = chunk.index;
+        }
+        if (errorCode != null) {
+            job.failedChunks++;
+            job.errorCode = errorCode;
+            job.errorMessage = message;
+        }
+        job.remainingChunks--;
+        if (job.remainingChunks == 0) {
+            finishJob(job);
+        }
+        startNext();
+    }
+
+    /**
+     * Stitches the chunk transcripts back together in order and emits the job result. A job fails only
+     * when it could not be read or none of its chunks could be transcribed.
+     */
+    private void finishJob(Job job) {
+        int chunkCount = job.chunkTexts != null ? job.chunkTexts.length : 0;
+        boolean failed = job.errorCode != null && job.failedChunks == chunkCount;
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < chunkCount; i++) {
+            String chunkText = job.chunkTexts[i];
+            if (chunkText != null && !chunkText.isEmpty()) {
+                if (text.length() > 0) {
+                    text.append(' ');
+                }
+                text.append(chunkText);
+            }
+        }
+
+        String stitched = text.toString();
+        ArrayList<String> matches = job.lastMatches;
+        int failedChunks = job.failedChunks;
+        long durationMs = job.header != null ? job.header.durationMs() : -1;
+        eventDispatcher.dispatch(FILE_TRANSCRIPTION_RESULT_EVENT, () -> {
+            JSObject payload = new JSObject();
+            payload.put("jobId", job.id);
+            payload.put("source", job.source);
+            if (failed) {
+                payload.put("status", "error");
+                payload.put("errorCode", job.errorCode);
+                payload.put("message", job.errorMessage);
+            } else {
+                payload.put("status", "success");
+                payload.put("text", stitched);
+                if (matches != null) {
+                    payload.put("lastMatches", new JSArray(matches));
+                }
+            }
+            payload.put("chunks", chunkCount);
+            if (failedChunks > 0) {
+                payload.put("failedChunks", failedChunks);
+            }
+            if (durationMs >= 0) {
+                payload.put("durationMs", durationMs);
+            }
+            return payload;
+        });
+    }
+
+    private void release(Chunk chunk) {
+        if (chunk.watchdog != null) {
+            handler.removeCallbacks(chunk.watchdog);
+            chunk.watchdog = null;
+        }
+        if (chunk.recognizer != null) {
+            try {
+                chunk.recognizer.cancel();
+            } catch (Exception ignored) {}
+            try {
+                chunk.recognizer.destroy();
+            } catch (Exception ignored) {}
+            chunk.recognizer = null;
+        }
+        // Unblocks a pump waiting on a full pipe.
+        closeQuietly(chunk.pipeWriteSide);
+    }
+
+    private void emitProgress(Job job, String state, double progress) {
+        eventDispatcher.dispatch(FILE_TRANSCRIPTION_PROGRESS_EVENT, () ->
+            new JSObject().put("jobId", job.id).put("source", job.source).put("state", state).put("progress", progress)
+        );
+    }
+
+    private static void writeFully(FileChannel sink, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            sink.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void skipFully(InputStream input, long length) throws IOException {
+        while (length > 0) {
+            long skipped = input.skip(length);
+            if (skipped <= 0) {
+                if (input.read() < 0) {
+                    throw new EOFException("Chunk starts past the end of the audio.");
+                }
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+
+    private static void closeQuietly(InputStream input) {
+        if (input == null) {
+            return;
+        }
+        try {
+            input.close();
+        } catch (IOException ignored) {}
+    }
+
+    private static void closeQuietly(ParcelFileDescriptor descriptor) {
+        if (descriptor == null) {
+            return;
+        }
+        try {
+            descriptor.close();
+        } catch (IOException ignored) {}
+    }
+}
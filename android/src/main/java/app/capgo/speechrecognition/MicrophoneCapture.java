@@ -0,0 +1,224 @@
+package app.capgo.speechrecognition;
+
+import android.annotation.SuppressLint;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import com.getcapacitor.Logger;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Plugin-owned microphone: records 16 kHz mono PCM with {@link AudioRecord} and streams it to the
+ * active recognizer through a pipe passed as {@code EXTRA_AUDIO_SOURCE}.
+ *
+ * The microphone stays open for the whole plugin session while recognizers come and go: each
+ * recognizer gets its own pipe from {@link #attach}, and audio recorded while no pipe is attached
+ * (between continuous restarts) is kept as pre-roll and written into the next pipe first. Every buffer
+ * also goes to the {@link Tap}, so local stages see exactly the audio the recognizer hears.
+ *
+ * {@link #start}, {@link #attach}, {@link #detach} and {@link #stop} are called while holding the
+ * plugin lock and never wait for the capture thread, which only takes this object's monitor and
+ * stops and releases its {@link AudioRecord} itself once it is no longer the current thread.
+ */
+class MicrophoneCapture {
+
+    interface Tap {
+        /**
+         * Called on the capture thread with every recorded buffer.
+         */
+        void onAudio(byte[] buffer, int offset, int length);
+    }
+
+    static final int SAMPLE_RATE = AudioCaptureBuffer.SAMPLE_RATE;
+
+    private static final String TAG = "SpeechRecognition";
+    private static final int READ_SIZE = SAMPLE_RATE * 2 * 20 / 1000;
+    private static final int PRE_ROLL_SIZE = SAMPLE_RATE * 2;
+
+    private final Tap tap;
+    private final byte[] preRoll = new byte[PRE_ROLL_SIZE];
+    private int preRollStart = 0;
+    private int preRollLength = 0;
+
+    // The running capture thread; a thread that is no longer current exits and releases its record.
+    private volatile Thread thread;
+    // Guarded by this.
+    private OutputStream pipe;
+
+    MicrophoneCapture(Tap tap) {
+        this.tap = tap;
+    }
+
+    boolean isRunning() {
+        return thread != null;
+    }
+
+    /**
+     * Opens the microphone with the given {@code MediaRecorder.AudioSource} and starts recording. Does
+     * nothing when already running.
+     *
+     * @throws IOException when the microphone cannot be opened
+     */
+    @SuppressLint("MissingPermission")
+    void start(int audioSource) throws IOException {
+        if (thread != null) {
+            return;
+        }
+        int minBufferSize = AudioRecord.getMinBufferSize(SAMPLE_RATE, AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT);
+        if (minBufferSize <= 0) {
+            throw new IOException("16 kHz mono recording is not supported on this device.");
+        }
+        AudioRecord created = new AudioRecord(
+            audioSource,
+            SAMPLE_RATE,
+            AudioFormat.CHANNEL_IN_MONO,
+            AudioFormat.ENCODING_PCM_16BIT,
+            Math.max(minBufferSize * 2, READ_SIZE * 8)
+        );
+        if (created.getState() != AudioRecord.STATE_INITIALIZED) {
+            created.release();
+            throw new IOException("Unable to open the microphone.");
+        }
+        try {
+            created.startRecording();
+        } catch (IllegalStateException ex) {
+            created.release();
+            throw new IOException("Unable to start recording: " + ex.getMessage());
+        }
+
+        synchronized (this) {
+            preRollLength = 0;
+        }
+        Thread started = new Thread(() -> run(created), "SpeechMicrophoneCapture");
+        thread = started;
+        started.start();
+    }
+
+    /**
+     * Creates a pipe for the next recognizer, closing the previous one. The caller passes the returned
+     * read side in the intent and closes its copy once {@code startListening} was called.
+     */
+    ParcelFileDescriptor attach() throws IOException {
+        ParcelFileDescriptor[] descriptors = ParcelFileDescriptor.createPipe();
+        OutputStream next = new ParcelFileDescriptor.AutoCloseOutputStream(descriptors[1]);
+        OutputStream previous;
+        synchronized (this) {
+            previous = pipe;
+            pipe = next;
+            if (preRollLength > 0) {
+                // Fits in the pipe's buffer, so this does not wait for the recognizer.
+                int first = Math.min(preRollLength, PRE_ROLL_SIZE - preRollStart);
+                try {
+                    next.write(preRoll, preRollStart, first);
+                    next.write(preRoll, 0, preRollLength - first);
+                } catch (IOException ex) {
+                    Logger.debug(TAG, "Unable to write pre-roll: " + ex.getMessage());
+                }
+                preRollLength = 0;
+            }
+        }
+        closeQuietly(previous);
+        return descriptors[0];
+    }
+
+    /**
+     * Closes the current pipe, which the recognizer sees as the end of the audio. Recording continues
+     * into the pre-roll until the next {@link #attach}.
+     */
+    void detach() {
+        OutputStream previous;
+        synchronized (this) {
+            previous = pipe;
+            pipe = null;
+            preRollLength = 0;
+        }
+        closeQuietly(previous);
+    }
+
+    /**
+     * Closes the current pipe and tells the capture thread to stop. The thread stops and releases the
+     * microphone after its current read, at most {@link #READ_SIZE} worth of audio later.
+     */
+    void stop() {
+        if (thread == null) {
+            return;
+        }
+        thread = null;
+        detach();
+    }
+
+    private void run(AudioRecord source) {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        Thread self = Thread.currentThread();
+        byte[] buffer = new byte[READ_SIZE];
+        try {
+            capture(source, self, buffer);
+        } finally {
+            try {
+                source.stop();
+            } catch (IllegalStateException ignored) {}
+            source.release();
+        }
+    }
+
+    private void capture(AudioRecord source, Thread self, byte[] buffer) {
+        while (thread == self) {
+            int read = source.read(buffer, 0, buffer.length);
+            if (thread != self) {
+                break;
+            }
+            if (read <= 0) {
+                if (read == AudioRecord.ERROR_DEAD_OBJECT) {
+                    Logger.warn(TAG, "Microphone capture stopped: audio server died");
+                    break;
+                }
+                continue;
+            }
+
+            tap.onAudio(buffer, 0, read);
+
+            OutputStream target;
+            synchronized (this) {
+                target = pipe;
+                if (target == null) {
+                    keepPreRoll(buffer, read);
+                    continue;
+                }
+            }
+            try {
+                // Outside the monitor: a recognizer that stopped reading must not block attach().
+                target.write(buffer, 0, read);
+            } catch (IOException ex) {
+                // The recognizer closed its end; audio goes to the pre-roll until the next attach().
+                synchronized (this) {
+                    if (pipe == target) {
+                        pipe = null;
+                    }
+                }
+                closeQuietly(target);
+            }
+        }
+    }
+
+    private void keepPreRoll(byte[] buffer, int length) {
+        for (int i = 0; i < length; i++) {
+            preRoll[(preRollStart + preRollLength) % PRE_ROLL_SIZE] = buffer[i];
+            if (preRollLength < PRE_ROLL_SIZE) {
+                preRollLength++;
+            } else {
+                preRollStart = (preRollStart + 1) % PRE_ROLL_SIZE;
+            }
+        }
+    }
+
+    private static void closeQuietly(OutputStream stream) {
+        if (stream == null) {
+            return;
+        }
+        try {
+            stream.close();
+        } catch (IOException ignored) {}
+    }
+}
@@ -0,0 +1,189 @@
+package app.capgo.speechrecognition;
+
+import android.os.SystemClock;
+import android.speech.RecognitionSupport;
+import android.speech.RecognitionSupportCallback;
+import android.speech.SpeechRecognizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Caches on-device {@link RecognitionSupport} lookups per language.
+ *
+ * Concurrent lookups for the same language share a single in-flight check, so only one
+ * recognizer is used no matter how many callers are waiting on the answer.
+ */
+class OnDeviceSupportCache {
+
+    interface Checker {
+        /**
+         * Checks support for {@code language}, on {@code recognizer} when the caller already holds one
+         * and on a recognizer of the checker's choosing when it is {@code null}.
+         */
+        void check(String language, SpeechRecognizer recognizer, RecognitionSupportCallback callback);
+    }
+
+    interface Callback {
+        void onSupport(Support support);
+
+        void onError(int error);
+    }
+
+    static final class Support {
+
+        final boolean installed;
+        final boolean supported;
+        final boolean pending;
+
+        Support(boolean installed, boolean supported, boolean pending) {
+            this.installed = installed;
+            this.supported = supported;
+            this.pending = pending;
+        }
+
+        boolean isAvailable() {
+            return installed || supported || pending;
+        }
+    }
+
+    private static final class Entry {
+
+        final Support support;
+        final long checkedAt;
+
+        Entry(Support support, long checkedAt) {
+            this.support = support;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    private final Checker checker;
+    private final long ttlMs;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, List<Callback>> inFlight = new HashMap<>();
+
+    OnDeviceSupportCache(Checker checker, long ttlMs) {
+        this.checker = checker;
+        this.ttlMs = ttlMs;
+    }
+
+    void lookup(String language, Callback callback) {
+        lookup(language, null, callback);
+    }
+
+    /**
+     * Looks up support, running a check on {@code recognizer} if one is needed, so a starting session
+     * can answer its own question without the checker binding another recognizer.
+     */
+    void lookup(String language, SpeechRecognizer recognizer, Callback callback) {
+        final String key = normalizeLanguageTag(language);
+        Support cached = null;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && SystemClock.elapsedRealtime() - entry.checkedAt < ttlMs) {
+                cached = entry.support;
+            } else {
+                List<Callback> waiting = inFlight.get(key);
+                if (waiting != null) {
+                    waiting.add(callback);
+                    return;
+                }
+                waiting = new ArrayList<>();
+                waiting.add(callback);
+                inFlight.put(key, waiting);
+            }
+        }
+
+        if (cached != null) {
+            callback.onSupport(cached);
+            return;
+        }
+
+        try {
+            checker.check(
+                language,
+                recognizer,
+                new RecognitionSupportCallback() {
+                    @Override
+                    public void onSupportResult(RecognitionSupport recognitionSupport) {
+                        completeWaiting(
+                            key,
+                            new Support(
+                                isLanguageSupported(key, recognitionSupport.getInstalledOnDeviceLanguages()),
+                                isLanguageSupported(key, recognitionSupport.getSupportedOnDeviceLanguages()),
+                                isLanguageSupported(key, recognitionSupport.getPendingOnDeviceLanguages())
+                            )
+                        );
+                    }
+
+                    @Override
+                    public void onError(int error) {
+                        failWaiting(key, error);
+                    }
+                }
+            );
+        } catch (UnsupportedOperationException ex) {
+            // The device has no on-device recognizer, which is an answer rather than a failure.
+            completeWaiting(key, new Support(false, false, false));
+        } catch (Exception ex) {
+            failWaiting(key, SpeechRecognizer.ERROR_CLIENT);
+        }
+    }
+
+    /**
+     * Drops the cached answer for a language, e.g. after its on-device model finished downloading.
+     */
+    synchronized void invalidate(String language) {
+        entries.remove(normalizeLanguageTag(language));
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    private void completeWaiting(String key, Support support) {
+        List<Callback> waiting;
+        synchronized (this) {
+            entries.put(key, new Entry(support, SystemClock.elapsedRealtime()));
+            waiting = inFlight.remove(key);
+        }
+        if (waiting != null) {
+            for (Callback waiter : waiting) {
+                waiter.onSupport(support);
+            }
+        }
+    }
+
+    private void failWaiting(String key, int error) {
+        List<Callback> waiting;
+        synchronized (this) {
+            waiting = inFlight.remove(key);
+        }
+        if (waiting != null) {
+            for (Callback waiter : waiting) {
+                waiter.onError(error);
+            }
+        }
+    }
+
+    private static boolean isLanguageSupported(String normalizedLanguage, List<String> candidateLanguages) {
+        if (candidateLanguages == null || candidateLanguages.isEmpty()) {
+            return false;
+        }
+
+        for (String candidateLanguage : candidateLanguages) {
+            if (normalizedLanguage.equals(normalizeLanguageTag(candidateLanguage))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    static String normalizeLanguageTag(String language) {
+        return language == null ? "" : language.replace('_', '-').toLowerCase(Locale.US);
+    }
+}
@@ -5,20 +5,23 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import android.speech.RecognizerIntent;
-import com.getcapacitor.JSArray;
-import com.getcapacitor.JSObject;
-import com.getcapacitor.PluginCall;
 import java.util.List;
 
 public class Receiver extends BroadcastReceiver implements Constants {
 
+    public interface Listener {
+        void onSupportedLanguages(List<String> languages, String languagePreference);
+
+        void onLanguagesUnavailable();
+    }
+
     private List<String> supportedLanguagesList;
     private String languagePref;
-    private final PluginCall call;
+    private final Listener listener;
 
-    public Receiver(PluginCall call) {
+    public Receiver(Listener listener) {
         super();
-        this.call = call;
+        this.listener = listener;
     }
 
     @Override
@@ -31,13 +34,14 @@ public class Receiver extends BroadcastReceiver implements Constants {
 
         if (extras.containsKey(RecognizerIntent.EXTRA_SUPPORTED_LANGUAGES)) {
             supportedLanguagesList = extras.getStringArrayList(RecognizerIntent.EXTRA_SUPPORTED_LANGUAGES);
+        }
 
-            JSArray languagesList = new JSArray(supportedLanguagesList);
-            call.resolve(new JSObject().put("languages", languagesList));
+        if (supportedLanguagesList != null) {
+            listener.onSupportedLanguages(supportedLanguagesList, languagePref);
             return;
         }
 
-        call.reject(LANGUAGE_ERROR);
+        listener.onLanguagesUnavailable();
     }
 
     public List<String> getSupportedLanguages() {
@@ -0,0 +1,129 @@
+package app.capgo.speechrecognition;
+
+import android.speech.SpeechRecognizer;
+import java.util.ArrayDeque;
+
+/**
+ * Keeps warm {@link SpeechRecognizer} instances per recognition mode so back-to-back sessions
+ * can skip the service bind that {@code createSpeechRecognizer} performs.
+ *
+ * Not thread-safe: every call is made while holding the plugin lock.
+ */
+class RecognizerPool {
+
+    interface Factory {
+        SpeechRecognizer create(boolean onDevice);
+    }
+
+    private final Factory factory;
+    private final int maxIdlePerMode;
+    private final ArrayDeque<SpeechRecognizer> onlineIdle = new ArrayDeque<>();
+    private final ArrayDeque<SpeechRecognizer> onDeviceIdle = new ArrayDeque<>();
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    RecognizerPool(Factory factory, int maxIdlePerMode) {
+        this.factory = factory;
+        this.maxIdlePerMode = maxIdlePerMode;
+    }
+
+    /**
+     * Returns a warm recognizer for the given mode, creating a new one when none is idle.
+     */
+    SpeechRecognizer acquire(boolean onDevice) {
+        SpeechRecognizer recognizer = idle(onDevice).pollFirst();
+        if (recognizer != null) {
+            hitCount++;
+            return recognizer;
+        }
+        missCount++;
+        return factory.create(onDevice);
+    }
+
+    /**
+     * Like {@link #acquire}, for short uses outside a session such as support checks, which are
+     * left out of the hit and miss counts so those keep describing session starts only.
+     */
+    SpeechRecognizer borrow(boolean onDevice) {
+        SpeechRecognizer recognizer = idle(onDevice).pollFirst();
+        return recognizer != null ? recognizer : factory.create(onDevice);
+    }
+
+    /**
+     * Cancels any pending work on the recognizer and keeps it for reuse, or destroys it when
+     * the pool for that mode is already full.
+     */
+    void release(SpeechRecognizer recognizer, boolean onDevice) {
+        if (recognizer == null) {
+            return;
+        }
+        try {
+            recognizer.cancel();
+        } catch (Exception ex) {
+            discard(recognizer);
+            return;
+        }
+
+        ArrayDeque<SpeechRecognizer> idle = idle(onDevice);
+        if (idle.size() >= maxIdlePerMode) {
+            discard(recognizer);
+            return;
+        }
+        idle.offerFirst(recognizer);
+    }
+
+    /**
+     * Destroys a recognizer that must not be reused, e.g. after its service connection broke.
+     */
+    void discard(SpeechRecognizer recognizer) {
+        if (recognizer == null) {
+            return;
+        }
+        try {
+            recognizer.cancel();
+        } catch (Exception ignored) {}
+        try {
+            recognizer.destroy();
+        } catch (Exception ignored) {}
+    }
+
+    /**
+     * Whether {@link #acquire} would return an idle, already bound recognizer for the given mode.
+     */
+    boolean hasIdle(boolean onDevice) {
+        return !idle(onDevice).isEmpty();
+    }
+
+    /**
+     * Makes sure at least one idle recognizer exists for the given mode.
+     */
+    void prewarm(boolean onDevice) {
+        ArrayDeque<SpeechRecognizer> idle = idle(onDevice);
+        if (idle.isEmpty() && maxIdlePerMode > 0) {
+            idle.offerFirst(factory.create(onDevice));
+        }
+    }
+
+    void clear() {
+        for (SpeechRecognizer recognizer : onlineIdle) {
+            discard(recognizer);
+        }
+        for (SpeechRecognizer recognizer : onDeviceIdle) {
+            discard(recognizer);
+        }
+        onlineIdle.clear();
+        onDeviceIdle.clear();
+    }
+
+    long getHitCount() {
+        return hitCount;
+    }
+
+    long getMissCount() {
+        return missCount;
+    }
+
+    private ArrayDeque<SpeechRecognizer> idle(boolean onDevice) {
+        return onDevice ? onDeviceIdle : onlineIdle;
+    }
+}
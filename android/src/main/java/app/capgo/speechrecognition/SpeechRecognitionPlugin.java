@@ -2,13 +2,18 @@ package app.capgo.speechrecognition;
 
 import android.Manifest;
 import android.app.Activity;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.media.AudioFormat;
 import android.media.AudioManager;
+import android.media.MediaRecorder;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
 import android.speech.ModelDownloadListener;
 import android.speech.RecognitionListener;
 import android.speech.RecognitionSupport;
@@ -27,12 +32,14 @@ import com.getcapacitor.annotation.ActivityCallback;
 import com.getcapacitor.annotation.CapacitorPlugin;
 import com.getcapacitor.annotation.Permission;
 import com.getcapacitor.annotation.PermissionCallback;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.Executor;
 import java.util.concurrent.locks.ReentrantLock;
-import org.json.JSONArray;
+import org.json.JSONException;
 
 @CapacitorPlugin(
     name = "SpeechRecognition",
@@ -46,33 +53,64 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
     private static final int FORCE_STOP_TIMEOUT_MS = 1500;
     private static final int STOP_FALLBACK_TIMEOUT_MS = 500;
     private static final int CONTINUOUS_RESTART_DELAY_MS = 100;
-
-    private enum ListeningState {
-        IDLE,
-        STARTING,
-        STARTED,
-        STOPPING
-    }
-
-    private Receiver languageReceiver;
+    private static final int MAX_SILENT_RESTART_DELAY_MS = 5000;
+    private static final int DEFAULT_DICTATION_TRANSCRIPT_LENGTH = 64 * 1024;
+    private static final int RECOGNIZER_POOL_SIZE_PER_MODE = 1;
+    private static final long ON_DEVICE_SUPPORT_CACHE_TTL_MS = 5 * 60 * 1000;
+    private static final int VOLUME_HISTORY_SIZE = 256;
+    private static final int MAX_AUDIO_CAPTURE_SECONDS = 300;
+    private static final String AUDIO_CAPTURE_DIRECTORY = "speech-capture";
+    private static final int SESSION_TIMELINE_HISTORY = 8;
+    private static final String TRANSCRIPT_SPILL_DIRECTORY = "speech-transcript";
+    private static final int DEFAULT_TRANSCRIPT_PAGE_LENGTH = 16 * 1024;
+    private static final int MAX_TRANSCRIPT_PAGE_LENGTH = 256 * 1024;
+    private static final String TRANSCRIPT_JOURNAL_DIRECTORY = "speech-journal";
+    private static final String TRANSCRIPT_JOURNAL_FILE = "transcript.journal";
+    private static final String RECOVERED_JOURNAL_FILE = "recovered.journal";
+    private static final int TRANSCRIPT_JOURNAL_FLUSH_INTERVAL_MS = 250;
+    private static final int MAX_FILE_TRANSCRIPTION_CONCURRENCY = 4;
+    private static final int DEFAULT_MAX_CHUNK_SECONDS = 30;
+    private static final int MIN_MAX_CHUNK_SECONDS = 5;
+    private static final double DEFAULT_SILENCE_THRESHOLD_DB = -40;
+
+    private SupportedLanguagesQuery languageQuery;
     private SpeechRecognizer speechRecognizer;
+    private ComponentName recognitionService;
     private boolean speechRecognizerUsesOnDevice = false;
+    private boolean speechRecognizerBroken = false;
+    private final RecognizerPool recognizerPool = new RecognizerPool(this::createRecognizer, RECOGNIZER_POOL_SIZE_PER_MODE);
+    private final OnDeviceSupportCache onDeviceSupportCache = new OnDeviceSupportCache(
+        this::checkOnDeviceSupport,
+        ON_DEVICE_SUPPORT_CACHE_TTL_MS
+    );
     private final ReentrantLock lock = new ReentrantLock();
     private final Handler handler = new Handler(Looper.getMainLooper());
-    private boolean listening = false;
-    private JSONArray previousPartialResults = new JSONArray();
+    private final PartialHypotheses previousPartialResults = new PartialHypotheses();
+    private boolean deltaPartialResults = false;
+    private final PartialResultsDeltaEncoder deltaEncoder = new PartialResultsDeltaEncoder();
+    private int maxPartialEventsPerSecond = 0;
+    private long lastPartialEventAt = 0;
+    private List<String> pendingPartialMatches;
+    private Runnable partialFlushRunnable;
 
     private Runnable forceStopRunnable;
     private boolean forceStopped = false;
     private boolean pttButtonHeld = false;
     private boolean continuousPTTMode = false;
+    private boolean gaplessRestart = false;
+    private boolean continuousDictationMode = false;
+    private int consecutiveSilentRestarts = 0;
+    private SpeechRecognizer standbyRecognizer;
     private boolean muteRecognizerBeep = false;
     private Integer savedNotificationVolume;
     private Integer savedSystemVolume;
     private long mutedForGeneration = -1;
     private boolean popupSessionActive = false;
     private boolean popupSessionCancelled = false;
-    private StringBuilder accumulatedResults = new StringBuilder();
+    private final TranscriptBuffer accumulatedResults = new TranscriptBuffer();
+    private TranscriptSpillFile transcriptSpill;
+    private TranscriptJournal transcriptJournal;
+    private boolean journalTranscript = false;
 
     private String lastLanguage = Locale.getDefault().toLanguageTag();
     private int lastMaxResults = MAX_RESULTS;
@@ -82,20 +120,36 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
     private boolean lastUseOnDeviceRecognition = false;
 
     private PluginCall activeStartCall;
-    private ListeningState state = ListeningState.IDLE;
-    private long sessionId = 0;
-    private long recognizerGeneration = 0;
+    private final SessionStateMachine stateMachine = new SessionStateMachine();
+    private final EventDispatcher eventDispatcher = new EventDispatcher(this::notifyListeners);
+    private final VolumeMeter volumeMeter = new VolumeMeter(VOLUME_HISTORY_SIZE);
+    private final AudioCaptureBuffer audioCapture = new AudioCaptureBuffer();
+    private final MicrophoneCapture microphoneCapture = new MicrophoneCapture(audioCapture::write);
+    private int captureAudioSource = -1;
+    private final SessionTimeline timeline = new SessionTimeline(SESSION_TIMELINE_HISTORY);
+    private boolean includeSessionMetrics = false;
+    private final PerformanceStats performanceStats = new PerformanceStats();
+    private FileTranscriptionQueue fileTranscriptions;
+    private long restartRequestedAt = 0;
     private String pendingStopReason;
 
     @Override
     public void load() {
         super.load();
+        recognitionService = parseRecognitionService(getConfig().getString("recognitionService", null));
+        bridge.execute(this::preserveUnfinishedJournal);
+        fileTranscriptions = new FileTranscriptionQueue(getContext(), this::createRecognizer, eventDispatcher);
+        languageQuery = new SupportedLanguagesQuery(
+            new SupportedLanguagesCatalog(getContext(), LANGUAGE_DETAILS_PACKAGE),
+            this::sendLanguageDetailsBroadcast
+        );
+        bridge.execute(() -> languageQuery.refreshIfStale());
         bridge
             .getWebView()
             .post(() -> {
                 try {
                     lock.lock();
-                    recreateIdleRecognizerLocked();
+                    recognizerPool.prewarm(false);
                     Logger.info(getLogTag(), "Instantiated SpeechRecognizer in load()");
                 } finally {
                     lock.unlock();
@@ -117,33 +171,17 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
             return;
         }
 
-        final SpeechRecognizer supportChecker;
-        try {
-            supportChecker = SpeechRecognizer.createOnDeviceSpeechRecognizer(bridge.getActivity());
-        } catch (UnsupportedOperationException ex) {
-            call.resolve(new JSObject().put("available", false));
-            return;
-        }
-
-        Intent intent = buildRecognizerIntent(language, MAX_RESULTS, null, false, 0, true);
-        supportChecker.checkRecognitionSupport(
-            intent,
-            mainExecutor(),
-            new RecognitionSupportCallback() {
+        onDeviceSupportCache.lookup(
+            language,
+            new OnDeviceSupportCache.Callback() {
                 @Override
-                public void onSupportResult(RecognitionSupport support) {
-                    boolean available =
-                        isLanguageSupported(language, support.getInstalledOnDeviceLanguages()) ||
-                        isLanguageSupported(language, support.getSupportedOnDeviceLanguages()) ||
-                        isLanguageSupported(language, support.getPendingOnDeviceLanguages());
-                    supportChecker.destroy();
-                    call.resolve(new JSObject().put("available", available));
+                public void onSupport(OnDeviceSupportCache.Support support) {
+                    call.resolve(new JSObject().put("available", support.isAvailable()));
                 }
 
                 @Override
                 public void onError(int error) {
                     Logger.warn(TAG, "On-device recognition support check failed: " + getErrorText(error));
-                    supportChecker.destroy();
                     call.resolve(new JSObject().put("available", false));
                 }
             }
@@ -152,6 +190,7 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
 
     @PluginMethod
     public void start(PluginCall call) {
+        long startedAt = SystemClock.elapsedRealtimeNanos();
         if (!SpeechRecognizer.isRecognitionAvailable(bridge.getContext())) {
             call.unavailable(NOT_AVAILABLE);
             return;
@@ -170,7 +209,26 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
         boolean useOnDeviceRecognition = call.getBoolean("useOnDeviceRecognition", false);
         int allowForSilence = call.getInt("allowForSilence", 0);
         boolean continuousPTT = call.getBoolean("continuousPTT", false);
+        boolean gaplessRestartOption = call.getBoolean("gaplessRestart", false);
+        boolean continuousDictation = call.getBoolean("continuousDictation", false);
+        int maxAccumulatedLengthOption = Math.max(
+            0,
+            call.getInt("maxAccumulatedLength", continuousDictation ? DEFAULT_DICTATION_TRANSCRIPT_LENGTH : 0)
+        );
         boolean muteRecognizerBeepOption = call.getBoolean("muteRecognizerBeep", continuousPTT);
+        boolean deltaPartialResultsOption = call.getBoolean("deltaPartialResults", false);
+        int maxPartialEventsPerSecondOption = Math.max(0, call.getInt("maxPartialEventsPerSecond", 0));
+        int volumeEventsPerSecondOption = Math.max(0, call.getInt("volumeEventsPerSecond", 0));
+        int captureAudioSecondsOption = Math.max(0, call.getInt("captureAudioSeconds", 0));
+        boolean includeSessionMetricsOption = call.getBoolean("includeSessionMetrics", false);
+        boolean journalTranscriptOption = call.getBoolean("journalTranscript", continuousDictation);
+        String audioSourceOption = call.getString("audioSource", null);
+        int captureAudioSourceOption = -1;
+
+        if (captureAudioSecondsOption > MAX_AUDIO_CAPTURE_SECONDS) {
+            call.reject("captureAudioSeconds must not exceed " + MAX_AUDIO_CAPTURE_SECONDS + ".");
+            return;
+        }
 
         if (useOnDeviceRecognition && popup) {
             call.reject("On-device recognition is not supported with popup mode on Android.");
@@ -187,24 +245,90 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
             return;
         }
 
+        if (continuousDictation && popup) {
+            call.reject("continuousDictation is only supported with inline recognition on Android.");
+            return;
+        }
+
+        if (continuousDictation && continuousPTT) {
+            call.reject("continuousDictation and continuousPTT cannot be combined.");
+            return;
+        }
+
+        if (continuousDictation && !partialResults) {
+            call.reject("continuousDictation requires partialResults: true.");
+            return;
+        }
+
+        if (gaplessRestartOption && !continuousPTT && !continuousDictation) {
+            call.reject("gaplessRestart requires continuousPTT or continuousDictation.");
+            return;
+        }
+
+        if (deltaPartialResultsOption && !partialResults) {
+            call.reject("deltaPartialResults requires partialResults: true.");
+            return;
+        }
+
         if (useOnDeviceRecognition && !canUseOnDeviceRecognition()) {
             call.unavailable("On-device speech recognition is not available on this device.");
             return;
         }
 
+        if (audioSourceOption != null) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) {
+                call.unavailable("audioSource requires Android 13 or newer.");
+                return;
+            }
+            if (popup) {
+                call.reject("audioSource is only supported with inline recognition on Android.");
+                return;
+            }
+            captureAudioSourceOption = parseAudioSource(audioSourceOption);
+            if (captureAudioSourceOption < 0) {
+                call.reject("audioSource must be one of voiceRecognition, unprocessed, mic or voiceCommunication.");
+                return;
+            }
+        }
+
         final long currentSessionId;
         try {
             lock.lock();
-            if (state != ListeningState.IDLE) {
+            SessionStateMachine.Snapshot startedSession = stateMachine.begin();
+            if (startedSession == null) {
                 call.reject("Speech recognition is already running.");
                 return;
             }
+            currentSessionId = startedSession.sessionId;
+            timeline.begin(currentSessionId, startedAt);
+            restartRequestedAt = 0;
+            includeSessionMetrics = includeSessionMetricsOption;
             cancelPendingForceStopLocked();
             forceStopped = false;
             pendingStopReason = null;
             resetPartialResultsCache();
-            accumulatedResults = new StringBuilder();
+            accumulatedResults.setSpill(null);
+            accumulatedResults.clear();
+            accumulatedResults.setMaxLength(maxAccumulatedLengthOption);
+            replaceTranscriptSpillLocked(currentSessionId, maxAccumulatedLengthOption > 0);
+            journalTranscript = journalTranscriptOption;
+            if (journalTranscript) {
+                if (transcriptJournal == null) {
+                    transcriptJournal = new TranscriptJournal(journalFile(TRANSCRIPT_JOURNAL_FILE), TRANSCRIPT_JOURNAL_FLUSH_INTERVAL_MS);
+                }
+                transcriptJournal.begin(currentSessionId, System.currentTimeMillis());
+            }
+            deltaPartialResults = deltaPartialResultsOption;
+            deltaEncoder.reset();
+            maxPartialEventsPerSecond = maxPartialEventsPerSecondOption;
+            lastPartialEventAt = 0;
+            volumeMeter.reset(volumeEventsPerSecondOption);
+            audioCapture.configure(captureAudioSecondsOption);
+            captureAudioSource = captureAudioSourceOption;
             continuousPTTMode = continuousPTT;
+            gaplessRestart = gaplessRestartOption;
+            continuousDictationMode = continuousDictation;
+            consecutiveSilentRestarts = 0;
             muteRecognizerBeep = muteRecognizerBeepOption;
             popupSessionActive = false;
             popupSessionCancelled = false;
@@ -215,9 +339,6 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
             lastAllowForSilence = allowForSilence;
             lastUseOnDeviceRecognition = useOnDeviceRecognition;
             activeStartCall = null;
-            sessionId++;
-            currentSessionId = sessionId;
-            state = ListeningState.STARTING;
         } finally {
             lock.unlock();
         }
@@ -228,7 +349,7 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
             TAG,
             String.format(
                 Locale.US,
-                "Starting recognition | sessionId=%d lang=%s maxResults=%d partial=%s popup=%s onDevice=%s allowForSilence=%d continuousPTT=%s",
+                "Starting recognition | sessionId=%d lang=%s maxResults=%d partial=%s popup=%s onDevice=%s allowForSilence=%d continuousPTT=%s dictation=%s gapless=%s",
                 currentSessionId,
                 language,
                 maxResults,
@@ -236,7 +357,9 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
                 popup,
                 useOnDeviceRecognition,
                 allowForSilence,
-                continuousPTT
+                continuousPTT,
+                continuousDictation,
+                gaplessRestartOption
             )
         );
 
@@ -261,15 +384,16 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
         PluginCall popupStartCall = null;
         try {
             lock.lock();
-            if (state == ListeningState.IDLE && !listening) {
+            SessionStateMachine.Snapshot snapshot = stateMachine.snapshot();
+            if (snapshot.state == SessionStateMachine.ListeningState.IDLE && !snapshot.listening) {
                 call.resolve();
                 return;
             }
 
-            currentSessionId = sessionId;
+            currentSessionId = snapshot.sessionId;
             pendingStopReason = "userStop";
-            if (state != ListeningState.STOPPING) {
-                state = ListeningState.STOPPING;
+            markTimeline(currentSessionId, SessionTimeline.Mark.STOP_REQUESTED);
+            if (stateMachine.moveTo(currentSessionId, SessionStateMachine.ListeningState.STOPPING)) {
                 emitListeningState("stoppingListening", currentSessionId, "userStop", null, null);
             }
 
@@ -304,7 +428,9 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
                             speechRecognizer.stopListening();
                         } catch (Exception ignored) {}
                     }
-                    listening(false);
+                    // Ends the piped audio too, for services that wait for the end of the stream.
+                    microphoneCapture.detach();
+                    stateMachine.setListening(currentSessionId, false);
                     scheduleFinishFallbackLocked(currentSessionId, "userStop", null, STOP_FALLBACK_TIMEOUT_MS);
                 } finally {
                     lock.unlock();
@@ -321,15 +447,16 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
         PluginCall popupStartCall = null;
         try {
             lock.lock();
-            if (state == ListeningState.IDLE && !listening) {
+            SessionStateMachine.Snapshot snapshot = stateMachine.snapshot();
+            if (snapshot.state == SessionStateMachine.ListeningState.IDLE && !snapshot.listening) {
                 call.resolve();
                 return;
             }
 
-            currentSessionId = sessionId;
+            currentSessionId = snapshot.sessionId;
             pendingStopReason = "forceStop";
-            if (state != ListeningState.STOPPING) {
-                state = ListeningState.STOPPING;
+            markTimeline(currentSessionId, SessionTimeline.Mark.STOP_REQUESTED);
+            if (stateMachine.moveTo(currentSessionId, SessionStateMachine.ListeningState.STOPPING)) {
                 emitListeningState("stoppingListening", currentSessionId, "forceStop", null, null);
             }
 
@@ -347,19 +474,25 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
                     speechRecognizer.stopListening();
                 } catch (Exception ignored) {}
             }
+            microphoneCapture.detach();
 
             forceStopRunnable = () -> {
                 PluginCall startCallToReject = null;
-                JSObject forcedPayload = null;
+                EventDispatcher.PayloadBuilder forcedPayload = null;
                 try {
                     lock.lock();
-                    if (currentSessionId != sessionId || (state == ListeningState.IDLE && !listening)) {
+                    SessionStateMachine.Snapshot current = stateMachine.snapshot();
+                    if (
+                        current.sessionId != currentSessionId ||
+                        (current.state == SessionStateMachine.ListeningState.IDLE && !current.listening)
+                    ) {
                         return;
                     }
 
                     forceStopped = true;
                     startCallToReject = activeStartCall;
                     activeStartCall = null;
+                    cancelPendingPartialFlushLocked();
                     forcedPayload = buildForcedPartialResultLocked();
                 } finally {
                     lock.unlock();
@@ -369,7 +502,7 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
                     startCallToReject.reject("Recognition force stopped before final results were produced.");
                 }
                 if (forcedPayload != null) {
-                    notifyListeners(PARTIAL_RESULTS_EVENT, forcedPayload);
+                    eventDispatcher.dispatch(PARTIAL_RESULTS_EVENT, forcedPayload);
                 }
                 finishSession(currentSessionId, "forceStop", null);
             };
@@ -400,8 +533,14 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
             String text = buildCurrentTranscriptTextLocked();
             result.put("available", !text.isEmpty());
             result.put("text", text);
-            if (previousPartialResults.length() > 0) {
-                result.put("matches", previousPartialResults);
+            if (!previousPartialResults.isEmpty()) {
+                result.put("matches", buildPartialMatchesLocked());
+            }
+            if (deltaPartialResults) {
+                // Only the text still in memory can be resent, so later offsets must count from its start.
+                deltaEncoder.resyncAccumulated(accumulatedResults.length(), accumulatedResults.getDroppedLength());
+                result.put("seq", deltaEncoder.getSequence());
+                result.put("accumulated", accumulatedResults.text());
             }
             call.resolve(result);
         } catch (Exception ex) {
@@ -411,6 +550,206 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
         }
     }
 
+    @PluginMethod
+    public void getTranscript(PluginCall call) {
+        int offset = Math.max(0, call.getInt("offset", 0));
+        int limit = call.getInt("limit", DEFAULT_TRANSCRIPT_PAGE_LENGTH);
+        if (limit <= 0 || limit > MAX_TRANSCRIPT_PAGE_LENGTH) {
+            call.reject("limit must be between 1 and " + MAX_TRANSCRIPT_PAGE_LENGTH + ".");
+            return;
+        }
+
+        TranscriptSpillFile spill;
+        long spilledLength;
+        long totalLength;
+        String inMemory;
+        try {
+            lock.lock();
+            spill = transcriptSpill;
+            if (accumulatedResults.getSpill() != null || spill == null) {
+                // Session in progress: the head of the transcript is on disk, the rest in memory. Like the
+                // finished transcript in the spill file, only finalized text counts, not the tail.
+                spilledLength = accumulatedResults.getDroppedLength();
+                totalLength = accumulatedResults.length();
+                inMemory = accumulatedResults.textBetween(offset, (int) Math.min(totalLength, (long) offset + limit));
+            } else {
+                spilledLength = spill.length();
+                totalLength = spilledLength;
+                inMemory = "";
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        long end = Math.min(totalLength, (long) offset + limit);
+        String head = "";
+        if (offset < spilledLength) {
+            if (spill == null) {
+                call.reject("The start of the transcript is no longer available.");
+                return;
+            }
+            try {
+                // Waits for the spill writes queued before this read, so the range observed above is on disk.
+                head = spill.read(offset, Math.min(end, spilledLength));
+            } catch (IOException ex) {
+                Logger.error(TAG, "Failed to read the transcript spill file", ex);
+                call.reject(ex.getLocalizedMessage());
+                return;
+            }
+        }
+
+        JSObject result = new JSObject();
+        result.put("text", head + inMemory);
+        result.put("offset", offset);
+        result.put("totalLength", totalLength);
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void transcribeFiles(PluginCall call) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) {
+            call.unavailable("File transcription requires Android 13 or newer.");
+            return;
+        }
+
+        JSArray files = call.getArray("files");
+        if (files == null || files.length() == 0) {
+            call.reject("files must contain at least one path or URI.");
+            return;
+        }
+
+        int concurrency = call.getInt("concurrency", 1);
+        if (concurrency < 1 || concurrency > MAX_FILE_TRANSCRIPTION_CONCURRENCY) {
+            call.reject("concurrency must be between 1 and " + MAX_FILE_TRANSCRIPTION_CONCURRENCY + ".");
+            return;
+        }
+
+        int maxChunkSeconds = call.getInt("maxChunkSeconds", DEFAULT_MAX_CHUNK_SECONDS);
+        if (maxChunkSeconds < MIN_MAX_CHUNK_SECONDS) {
+            call.reject("maxChunkSeconds must be at least " + MIN_MAX_CHUNK_SECONDS + ".");
+            return;
+        }
+
+        boolean useOnDeviceRecognition = call.getBoolean("useOnDeviceRecognition", false);
+        if (useOnDeviceRecognition && !canUseOnDeviceRecognition()) {
+            call.unavailable("On-device speech recognition is not available on this device.");
+            return;
+        }
+
+        List<String> sources;
+        try {
+            sources = files.toList();
+        } catch (JSONException ex) {
+            call.reject("files must be an array of strings.");
+            return;
+        }
+
+        FileTranscriptionQueue.Options options = new FileTranscriptionQueue.Options(
+            call.getString("language", Locale.getDefault().toLanguageTag()),
+            call.getInt("maxResults", MAX_RESULTS),
+            useOnDeviceRecognition,
+            call.getBoolean("splitAtSilence", false),
+            maxChunkSeconds * 1000,
+            call.getDouble("silenceThresholdDb", DEFAULT_SILENCE_THRESHOLD_DB)
+        );
+        List<Long> jobIds = fileTranscriptions.enqueue(sources, options, concurrency);
+        call.resolve(new JSObject().put("jobIds", new JSArray(jobIds)));
+    }
+
+    @PluginMethod
+    public void recoverTranscript(PluginCall call) {
+        File file = journalFile(RECOVERED_JOURNAL_FILE);
+        try {
+            TranscriptJournal.Recovered recovered = TranscriptJournal.recover(file);
+            JSObject result = new JSObject();
+            result.put("available", recovered != null);
+            if (recovered != null) {
+                result.put("sessionId", recovered.sessionId);
+                result.put("startedAt", recovered.startedAt);
+                result.put("text", recovered.text);
+                result.put("partial", recovered.partial);
+                result.put("segmentCount", recovered.segmentCount);
+            }
+            if (call.getBoolean("discard", false) && file.exists() && !file.delete()) {
+                Logger.warn(TAG, "Unable to delete the recovered transcript journal");
+            }
+            call.resolve(result);
+        } catch (IOException ex) {
+            Logger.error(TAG, "Failed to read the recovered transcript journal", ex);
+            call.reject(ex.getLocalizedMessage());
+        }
+    }
+
+    @PluginMethod
+    public void getRecentVolumeLevels(PluginCall call) {
+        int count = call.getInt("count", VOLUME_HISTORY_SIZE);
+        JSArray levels = new JSArray();
+        for (float level : volumeMeter.getRecentLevels(count)) {
+            levels.put(Double.valueOf(level));
+        }
+        call.resolve(new JSObject().put("levels", levels));
+    }
+
+    @PluginMethod
+    public void getSessionMetrics(PluginCall call) {
+        long sessionId = call.getData().has("sessionId") ? call.getLong("sessionId") : timeline.getLatestSessionId();
+        long[] marks = timeline.get(sessionId);
+        if (marks == null) {
+            call.reject("No metrics recorded for session " + sessionId + ".");
+            return;
+        }
+        call.resolve(buildSessionMetrics(sessionId, marks));
+    }
+
+    @PluginMethod
+    public void getPerformanceStats(PluginCall call) {
+        JSObject result = new JSObject();
+        for (PerformanceStats.Metric metric : PerformanceStats.Metric.values()) {
+            result.put(metric.key, buildHistogramSummary(performanceStats.get(metric)));
+        }
+        JSObject pool = new JSObject();
+        try {
+            lock.lock();
+            pool.put("hits", recognizerPool.getHitCount());
+            pool.put("misses", recognizerPool.getMissCount());
+        } finally {
+            lock.unlock();
+        }
+        result.put("recognizerPool", pool);
+        if (call.getBoolean("reset", false)) {
+            performanceStats.reset();
+        }
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void saveCapturedAudio(PluginCall call) {
+        if (!audioCapture.isEnabled()) {
+            call.reject("Audio capture is not enabled. Pass captureAudioSeconds to start().");
+            return;
+        }
+
+        int seconds = Math.max(0, call.getInt("seconds", 0));
+        File directory = new File(getContext().getCacheDir(), AUDIO_CAPTURE_DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            call.reject("Unable to create the audio capture directory.");
+            return;
+        }
+
+        File file = new File(directory, "capture-" + System.currentTimeMillis() + ".wav");
+        try {
+            int bytes = audioCapture.writeWav(file, seconds);
+            JSObject result = new JSObject();
+            result.put("path", file.getAbsolutePath());
+            result.put("durationMs", (bytes * 1000L) / AudioCaptureBuffer.BYTES_PER_SECOND);
+            result.put("sampleRate", AudioCaptureBuffer.SAMPLE_RATE);
+            call.resolve(result);
+        } catch (IOException ex) {
+            Logger.error(TAG, "Failed to save captured audio", ex);
+            call.reject(ex.getLocalizedMessage());
+        }
+    }
+
     @PluginMethod
     public void setPTTState(PluginCall call) {
         boolean held = call.getBoolean("held", false);
@@ -421,7 +760,11 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
                 muteRecognizerBeep = call.getBoolean("mute");
             }
             if (held) {
-                accumulatedResults = new StringBuilder();
+                accumulatedResults.clear();
+                if (journalTranscript) {
+                    transcriptJournal.clear();
+                }
+                deltaEncoder.resetAccumulated();
                 forceStopped = false;
                 pendingStopReason = null;
             }
@@ -433,27 +776,20 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
 
     @PluginMethod
     public void getSupportedLanguages(PluginCall call) {
-        if (languageReceiver == null) {
-            languageReceiver = new Receiver(call);
-        }
-
-        List<String> supportedLanguages = languageReceiver.getSupportedLanguages();
-        if (supportedLanguages != null) {
-            JSONArray languages = new JSONArray(supportedLanguages);
-            call.resolve(new JSObject().put("languages", languages));
-            return;
-        }
+        languageQuery.query(call);
+    }
 
+    private void sendLanguageDetailsBroadcast(Receiver receiver) {
         Intent detailsIntent = new Intent(RecognizerIntent.ACTION_GET_LANGUAGE_DETAILS);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            detailsIntent.setPackage("com.google.android.googlequicksearchbox");
+            detailsIntent.setPackage(LANGUAGE_DETAILS_PACKAGE);
         }
-        bridge.getActivity().sendOrderedBroadcast(detailsIntent, null, languageReceiver, null, Activity.RESULT_OK, null, null);
+        bridge.getActivity().sendOrderedBroadcast(detailsIntent, null, receiver, null, Activity.RESULT_OK, null, null);
     }
 
     @PluginMethod
     public void isListening(PluginCall call) {
-        call.resolve(new JSObject().put("listening", listening));
+        call.resolve(new JSObject().put("listening", stateMachine.snapshot().listening));
     }
 
     @PluginMethod
@@ -487,7 +823,7 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
         boolean popupCancelled;
         try {
             lock.lock();
-            currentSessionId = sessionId;
+            currentSessionId = stateMachine.snapshot().sessionId;
             finalReason = pendingStopReason != null ? pendingStopReason : "results";
             popupCancelled = popupSessionCancelled;
             popupSessionActive = false;
@@ -531,8 +867,10 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
         if (showPopup) {
             try {
                 lock.lock();
-                listening(true);
-                state = ListeningState.STARTED;
+                if (!stateMachine.moveTo(currentSessionId, SessionStateMachine.ListeningState.STARTED)) {
+                    call.reject("Recognition stopped before final results were produced.");
+                    return;
+                }
                 popupSessionActive = true;
                 popupSessionCancelled = false;
                 activeStartCall = call;
@@ -540,6 +878,7 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
                 lock.unlock();
             }
             emitListeningState("started", currentSessionId, restarting ? "results" : "userStart", null, "started");
+            markTimeline(currentSessionId, SessionTimeline.Mark.START_LISTENING);
             startActivityForResult(call, intent, "listeningResult");
             return;
         }
@@ -549,7 +888,7 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
             .post(() -> {
                 try {
                     lock.lock();
-                    if (currentSessionId != sessionId) {
+                    if (!stateMachine.isCurrentSession(currentSessionId)) {
                         return;
                     }
 
@@ -597,8 +936,11 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
             intent.putExtra(RecognizerIntent.EXTRA_PREFER_OFFLINE, true);
         }
 
-        if (allowForSilence > 0) {
+        if (allowForSilence > 0 || continuousDictationMode) {
             intent.putExtra(RecognizerIntent.EXTRA_SEGMENTED_SESSION, true);
+        }
+
+        if (allowForSilence > 0) {
             intent.putExtra(RecognizerIntent.EXTRA_SPEECH_INPUT_COMPLETE_SILENCE_LENGTH_MILLIS, allowForSilence);
             intent.putExtra(RecognizerIntent.EXTRA_SPEECH_INPUT_POSSIBLY_COMPLETE_SILENCE_LENGTH_MILLIS, allowForSilence);
         }
@@ -617,13 +959,11 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
 
     private void rebuildRecognizerLocked(PluginCall call, boolean partialResults, boolean useOnDeviceRecognition, long currentSessionId) {
         if (speechRecognizer != null && speechRecognizerUsesOnDevice != useOnDeviceRecognition) {
-            destroyCurrentRecognizerLocked();
+            recycleCurrentRecognizerLocked();
         }
 
         if (speechRecognizer == null) {
-            speechRecognizer = useOnDeviceRecognition
-                ? SpeechRecognizer.createOnDeviceSpeechRecognizer(bridge.getActivity())
-                : SpeechRecognizer.createSpeechRecognizer(bridge.getActivity());
+            speechRecognizer = recognizerPool.acquire(useOnDeviceRecognition);
             speechRecognizerUsesOnDevice = useOnDeviceRecognition;
         } else {
             try {
@@ -632,11 +972,12 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
             speechRecognizerUsesOnDevice = useOnDeviceRecognition;
         }
 
-        recognizerGeneration++;
-        SpeechRecognitionListener listener = new SpeechRecognitionListener(currentSessionId, recognizerGeneration);
+        long generation = stateMachine.nextGeneration();
+        SpeechRecognitionListener listener = new SpeechRecognitionListener(currentSessionId, generation);
         listener.setCall(call);
         listener.setPartialResults(partialResults);
         speechRecognizer.setRecognitionListener(listener);
+        markTimeline(currentSessionId, SessionTimeline.Mark.RECOGNIZER_CREATED);
     }
 
     private void beginOnDeviceListening(
@@ -647,19 +988,17 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
         long currentSessionId,
         boolean restarting
     ) {
-        speechRecognizer.checkRecognitionSupport(
-            intent,
-            mainExecutor(),
-            new RecognitionSupportCallback() {
+        onDeviceSupportCache.lookup(
+            language,
+            speechRecognizer,
+            new OnDeviceSupportCache.Callback() {
                 @Override
-                public void onSupportResult(RecognitionSupport support) {
-                    boolean installed = isLanguageSupported(language, support.getInstalledOnDeviceLanguages());
-                    boolean supported =
-                        installed ||
-                        isLanguageSupported(language, support.getSupportedOnDeviceLanguages()) ||
-                        isLanguageSupported(language, support.getPendingOnDeviceLanguages());
-
-                    if (!supported) {
+                public void onSupport(OnDeviceSupportCache.Support support) {
+                    if (!hasSessionRecognizer(currentSessionId)) {
+                        rejectStoppedStart(call, partialResults);
+                        return;
+                    }
+                    if (!support.isAvailable()) {
                         if (call != null) {
                             call.reject("On-device recognition is not available for language: " + language);
                         }
@@ -672,16 +1011,20 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
                         return;
                     }
 
-                    if (installed) {
+                    if (support.installed) {
                         startInlineListening(intent, partialResults, call, currentSessionId, restarting);
                         return;
                     }
 
-                    triggerOnDeviceModelDownload(intent, partialResults, call, currentSessionId, restarting);
+                    triggerOnDeviceModelDownload(intent, language, partialResults, call, currentSessionId, restarting);
                 }
 
                 @Override
                 public void onError(int error) {
+                    if (!hasSessionRecognizer(currentSessionId)) {
+                        rejectStoppedStart(call, partialResults);
+                        return;
+                    }
                     String errorCode = getErrorCode(error);
                     String message = getErrorText(error);
                     if (call != null) {
@@ -694,14 +1037,46 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
         );
     }
 
+    /**
+     * Whether {@code currentSessionId} is still running with a recognizer, which an asynchronous step of
+     * its start path must check before touching {@link #speechRecognizer}: stop() may have finished the
+     * session in the meantime.
+     */
+    private boolean hasSessionRecognizer(long currentSessionId) {
+        try {
+            lock.lock();
+            return stateMachine.isCurrentSession(currentSessionId) && speechRecognizer != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void rejectStoppedStart(PluginCall call, boolean partialResults) {
+        if (partialResults && call != null) {
+            call.reject("Recognition stopped before final results were produced.");
+        }
+    }
+
     private void triggerOnDeviceModelDownload(
         Intent intent,
+        String language,
         boolean partialResults,
         PluginCall call,
         long currentSessionId,
         boolean restarting
     ) {
-        speechRecognizer.triggerModelDownload(
+        SpeechRecognizer recognizer;
+        try {
+            lock.lock();
+            recognizer = stateMachine.isCurrentSession(currentSessionId) ? speechRecognizer : null;
+        } finally {
+            lock.unlock();
+        }
+        if (recognizer == null) {
+            rejectStoppedStart(call, partialResults);
+            return;
+        }
+        recognizer.triggerModelDownload(
             intent,
             mainExecutor(),
             new ModelDownloadListener() {
@@ -710,6 +1085,7 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
 
                 @Override
                 public void onSuccess() {
+                    onDeviceSupportCache.invalidate(language);
                     startInlineListening(intent, partialResults, call, currentSessionId, restarting);
                 }
 
@@ -739,19 +1115,46 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
 
     private void startInlineListening(Intent intent, boolean partialResults, PluginCall call, long currentSessionId, boolean restarting) {
         final long muteGeneration;
+        ParcelFileDescriptor capturedAudio = null;
         try {
             lock.lock();
-            muteGeneration = recognizerGeneration;
+            if (!stateMachine.moveTo(currentSessionId, SessionStateMachine.ListeningState.STARTED)) {
+                // stop() or forceStop() got here first; their finish path releases the session.
+                if (partialResults && call != null) {
+                    call.reject("Recognition stopped before final results were produced.");
+                }
+                return;
+            }
+            if (captureAudioSource >= 0) {
+                try {
+                    capturedAudio = attachMicrophoneCaptureLocked(intent);
+                } catch (IOException | RuntimeException ex) {
+                    Logger.error(TAG, "Unable to start microphone capture", ex);
+                    if (call != null) {
+                        call.reject(ex.getMessage());
+                    }
+                    emitErrorEvent("AUDIO_CAPTURE_FAILED", ex.getMessage(), currentSessionId);
+                    finishSession(currentSessionId, "error", "AUDIO_CAPTURE_FAILED");
+                    return;
+                }
+            }
+            muteGeneration = stateMachine.snapshot().generation;
             muteRecognizerBeepIfNeededLocked(muteGeneration);
         } finally {
             lock.unlock();
         }
-        speechRecognizer.startListening(intent);
+        markTimeline(currentSessionId, SessionTimeline.Mark.START_LISTENING);
+        try {
+            speechRecognizer.startListening(intent);
+        } finally {
+            // The recognizer service holds its own duplicate of the read side once the intent is sent.
+            closeQuietly(capturedAudio);
+        }
         handler.postDelayed(
             () -> {
                 try {
                     lock.lock();
-                    if (currentSessionId != sessionId) {
+                    if (!stateMachine.isCurrentSession(currentSessionId)) {
                         return;
                     }
                     restoreRecognizerBeepIfNeededLocked(muteGeneration);
@@ -761,21 +1164,75 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
             },
             750
         );
-        listening(true);
-        state = ListeningState.STARTED;
         emitListeningState("started", currentSessionId, restarting ? "results" : "userStart", null, "started");
         if (partialResults && call != null) {
             activeStartCall = null;
-            call.resolve();
+            // Resolve through the event thread so the promise does not overtake the "started" event.
+            eventDispatcher.run(() -> call.resolve());
+        }
+    }
+
+    /**
+     * Opens the plugin's microphone on first use in the session and points the intent at a fresh pipe
+     * from it.
+     *
+     * @return the pipe's read side, to close once {@code startListening} was called
+     */
+    private ParcelFileDescriptor attachMicrophoneCaptureLocked(Intent intent) throws IOException {
+        microphoneCapture.start(captureAudioSource);
+        ParcelFileDescriptor readSide = microphoneCapture.attach();
+        intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE, readSide);
+        intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_ENCODING, AudioFormat.ENCODING_PCM_16BIT);
+        intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_SAMPLING_RATE, MicrophoneCapture.SAMPLE_RATE);
+        intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_CHANNEL_COUNT, 1);
+        return readSide;
+    }
+
+    /**
+     * Maps the {@code audioSource} start option to a {@link MediaRecorder.AudioSource}, or {@code -1}
+     * when it is not a known source.
+     */
+    private int parseAudioSource(String audioSource) {
+        switch (audioSource) {
+            case "voiceRecognition":
+                return MediaRecorder.AudioSource.VOICE_RECOGNITION;
+            case "unprocessed":
+                AudioManager audioManager = (AudioManager) getContext().getSystemService(Context.AUDIO_SERVICE);
+                if (audioManager != null && "true".equals(audioManager.getProperty(AudioManager.PROPERTY_SUPPORT_AUDIO_SOURCE_UNPROCESSED))) {
+                    return MediaRecorder.AudioSource.UNPROCESSED;
+                }
+                Logger.warn(TAG, "UNPROCESSED audio source is not supported on this device; using VOICE_RECOGNITION");
+                return MediaRecorder.AudioSource.VOICE_RECOGNITION;
+            case "mic":
+                return MediaRecorder.AudioSource.MIC;
+            case "voiceCommunication":
+                return MediaRecorder.AudioSource.VOICE_COMMUNICATION;
+            default:
+                return -1;
         }
     }
 
-    private void scheduleContinuousRestart(long currentSessionId) {
+    private static void closeQuietly(ParcelFileDescriptor descriptor) {
+        if (descriptor == null) {
+            return;
+        }
+        try {
+            descriptor.close();
+        } catch (IOException ignored) {}
+    }
+
+    private void scheduleContinuousRestart(long currentSessionId, int delayMs) {
+        try {
+            lock.lock();
+            restartRequestedAt = SystemClock.elapsedRealtimeNanos();
+        } finally {
+            lock.unlock();
+        }
         handler.postDelayed(
             () -> {
                 try {
                     lock.lock();
-                    if (currentSessionId != sessionId || !continuousPTTMode || !pttButtonHeld || pendingStopReason != null) {
+                    if (!stateMachine.isCurrentSession(currentSessionId) || !shouldAutoRestartLocked()) {
                         return;
                     }
                 } finally {
@@ -795,10 +1252,139 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
                     true
                 );
             },
-            CONTINUOUS_RESTART_DELAY_MS
+            delayMs
         );
     }
 
+    /**
+     * Whether the current session restarts recognition on its own once a segment ends: continuous PTT
+     * while the button is held, or continuous dictation until stopped.
+     */
+    private boolean shouldAutoRestartLocked() {
+        return pendingStopReason == null && ((continuousPTTMode && pttButtonHeld) || continuousDictationMode);
+    }
+
+    /**
+     * Restarts a continuous session, either by switching to the standby recognizer right away or by
+     * rebuilding the recognizer after {@code delayMs}.
+     */
+    private void restartContinuousSession(long currentSessionId, int delayMs) {
+        boolean gapless;
+        try {
+            lock.lock();
+            gapless = gaplessRestart && delayMs <= CONTINUOUS_RESTART_DELAY_MS;
+        } finally {
+            lock.unlock();
+        }
+        if (gapless) {
+            switchToStandbyRecognizer(currentSessionId);
+        } else {
+            scheduleContinuousRestart(currentSessionId, delayMs);
+        }
+    }
+
+    /**
+     * Restart delay after a segment that ended without speech. Continuous dictation backs off
+     * exponentially up to {@link #MAX_SILENT_RESTART_DELAY_MS} so a silent room does not keep the
+     * recognizer service spinning; any recognized speech resets the backoff.
+     */
+    private int nextSilentRestartDelayLocked() {
+        if (!continuousDictationMode) {
+            return CONTINUOUS_RESTART_DELAY_MS;
+        }
+        int shift = Math.min(consecutiveSilentRestarts, 6);
+        consecutiveSilentRestarts++;
+        return Math.min(CONTINUOUS_RESTART_DELAY_MS << shift, MAX_SILENT_RESTART_DELAY_MS);
+    }
+
+    /**
+     * Binds a second recognizer while the active one is still finalizing, so the next continuous
+     * segment does not pay for recognizer creation.
+     *
+     * A pooled recognizer is already bound. A new one only binds on its first call, so on Android 13+
+     * a support check is sent right away to start the bind while the active recognizer finalizes;
+     * on older versions only a pool hit saves the bind.
+     */
+    private void prepareStandbyRecognizerLocked() {
+        if (!gaplessRestart || standbyRecognizer != null) {
+            return;
+        }
+        try {
+            boolean bound = recognizerPool.hasIdle(lastUseOnDeviceRecognition);
+            standbyRecognizer = recognizerPool.acquire(lastUseOnDeviceRecognition);
+            if (!bound && Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                Intent intent = buildRecognizerIntent(lastLanguage, MAX_RESULTS, null, false, 0, lastUseOnDeviceRecognition);
+                standbyRecognizer.checkRecognitionSupport(
+                    intent,
+                    mainExecutor(),
+                    new RecognitionSupportCallback() {
+                        @Override
+                        public void onSupportResult(RecognitionSupport support) {}
+
+                        @Override
+                        public void onError(int error) {}
+                    }
+                );
+            }
+        } catch (Exception ex) {
+            Logger.error(TAG, "Failed to prepare standby recognizer", ex);
+        }
+    }
+
+    private void releaseStandbyRecognizerLocked() {
+        if (standbyRecognizer != null) {
+            recognizerPool.release(standbyRecognizer, lastUseOnDeviceRecognition);
+            standbyRecognizer = null;
+        }
+    }
+
+    /**
+     * Moves capture to the standby recognizer as soon as the active one delivered its results, without
+     * the restart delay and the WebView round trip of {@link #beginListening}. The finished recognizer
+     * goes back to the pool and becomes the standby for the following segment.
+     */
+    private void switchToStandbyRecognizer(long currentSessionId) {
+        try {
+            lock.lock();
+            restartRequestedAt = SystemClock.elapsedRealtimeNanos();
+            if (!stateMachine.isCurrentSession(currentSessionId) || !shouldAutoRestartLocked()) {
+                return;
+            }
+
+            prepareStandbyRecognizerLocked();
+            if (standbyRecognizer == null) {
+                scheduleContinuousRestart(currentSessionId, CONTINUOUS_RESTART_DELAY_MS);
+                return;
+            }
+
+            recycleCurrentRecognizerLocked();
+            speechRecognizer = standbyRecognizer;
+            speechRecognizerUsesOnDevice = lastUseOnDeviceRecognition;
+            standbyRecognizer = null;
+
+            long generation = stateMachine.nextGeneration();
+            SpeechRecognitionListener listener = new SpeechRecognitionListener(currentSessionId, generation);
+            listener.setPartialResults(lastPartialResults);
+            speechRecognizer.setRecognitionListener(listener);
+
+            Intent intent = buildRecognizerIntent(
+                lastLanguage,
+                lastMaxResults,
+                lastPrompt,
+                lastPartialResults,
+                lastAllowForSilence,
+                lastUseOnDeviceRecognition
+            );
+            startInlineListening(intent, lastPartialResults, null, currentSessionId, true);
+        } catch (Exception ex) {
+            Logger.error(TAG, "Error switching to standby recognizer", ex);
+            emitErrorEvent("START_FAILED", ex.getMessage(), currentSessionId);
+            finishSession(currentSessionId, "error", "START_FAILED");
+        } finally {
+            lock.unlock();
+        }
+    }
+
     private void finishSession(long finishedSessionId, String explicitReason, String errorCode) {
         handler.post(() -> {
             PluginCall startCallToReject = null;
@@ -807,18 +1393,23 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
 
             try {
                 lock.lock();
-                if (finishedSessionId != sessionId) {
+                SessionStateMachine.Snapshot snapshot = stateMachine.snapshot();
+                if (snapshot.sessionId != finishedSessionId || snapshot.state == SessionStateMachine.ListeningState.IDLE) {
                     return;
                 }
 
+                markTimeline(finishedSessionId, SessionTimeline.Mark.FINISHED);
                 reason = explicitReason != null ? explicitReason : (pendingStopReason != null ? pendingStopReason : "unknown");
-                if (state != ListeningState.STOPPING) {
-                    state = ListeningState.STOPPING;
+                if (forceStopped && "forceStop".equals(reason)) {
+                    // The recognizer ignored stopListening() until the force-stop timeout, so do not reuse it.
+                    speechRecognizerBroken = true;
+                }
+                if (stateMachine.moveTo(finishedSessionId, SessionStateMachine.ListeningState.STOPPING)) {
                     emitListeningState("stoppingListening", finishedSessionId, reason, errorCode, null);
                 }
 
                 cancelPendingForceStopLocked();
-                listening(false);
+                stateMachine.setListening(finishedSessionId, false);
                 restoreRecognizerBeepIfNeededLocked(mutedForGeneration);
                 if (activeStartCall != null && !lastPartialResults && ("userStop".equals(reason) || "forceStop".equals(reason))) {
                     startCallToReject = activeStartCall;
@@ -826,26 +1417,64 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
                 activeStartCall = null;
                 pendingStopReason = null;
                 continuousPTTMode = false;
+                gaplessRestart = false;
+                continuousDictationMode = false;
+                consecutiveSilentRestarts = 0;
+                restartRequestedAt = 0;
                 popupSessionActive = false;
                 popupSessionCancelled = false;
+                microphoneCapture.stop();
+                captureAudioSource = -1;
+                if (pendingPartialMatches != null && !forceStopped) {
+                    eventDispatcher.dispatch(PARTIAL_RESULTS_EVENT, buildPartialResultPayloadLocked(pendingPartialMatches));
+                }
                 forceStopped = false;
+                if (journalTranscript) {
+                    transcriptJournal.end();
+                    journalTranscript = false;
+                }
+                // Keep the full transcript readable through getTranscript() until the next session.
+                accumulatedResults.spillRemaining();
+                accumulatedResults.setSpill(null);
                 resetPartialResultsCache();
-                accumulatedResults = new StringBuilder();
+                accumulatedResults.clear();
 
-                destroyCurrentRecognizerLocked();
+                recycleCurrentRecognizerLocked();
+                releaseStandbyRecognizerLocked();
+                stateMachine.nextGeneration();
                 try {
-                    recreateIdleRecognizerLocked();
+                    recognizerPool.prewarm(false);
                 } catch (Exception ex) {
                     emitReady = false;
                     Logger.error(TAG, "Failed to recreate recognizer", ex);
                     emitErrorEvent("RECREATE_FAILED", ex.getMessage(), finishedSessionId);
                 }
 
-                state = ListeningState.IDLE;
+                Logger.debug(
+                    TAG,
+                    String.format(
+                        Locale.US,
+                        "Recognizer pool | hits=%d misses=%d",
+                        recognizerPool.getHitCount(),
+                        recognizerPool.getMissCount()
+                    )
+                );
+                stateMachine.moveTo(finishedSessionId, SessionStateMachine.ListeningState.IDLE);
                 if (emitReady) {
-                    notifyListeners(READY_FOR_NEXT_SESSION_EVENT, new JSObject().put("sessionId", finishedSessionId));
+                    eventDispatcher.dispatch(READY_FOR_NEXT_SESSION_EVENT, () -> new JSObject().put("sessionId", finishedSessionId));
+                }
+                if (includeSessionMetrics) {
+                    long[] marks = timeline.get(finishedSessionId);
+                    eventDispatcher.dispatch(LISTENING_EVENT, () -> {
+                        JSObject payload = buildListeningStatePayload("stopped", finishedSessionId, reason, errorCode, "stopped");
+                        if (marks != null) {
+                            payload.put("metrics", buildSessionMetrics(finishedSessionId, marks));
+                        }
+                        return payload;
+                    });
+                } else {
+                    emitListeningState("stopped", finishedSessionId, reason, errorCode, "stopped");
                 }
-                emitListeningState("stopped", finishedSessionId, reason, errorCode, "stopped");
             } finally {
                 lock.unlock();
             }
@@ -856,25 +1485,128 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
         });
     }
 
-    private void recreateIdleRecognizerLocked() {
-        destroyCurrentRecognizerLocked();
-        speechRecognizer = SpeechRecognizer.createSpeechRecognizer(bridge.getActivity());
+    /**
+     * Creates the platform recognizer; the lifecycle tests override it to return a scripted fake.
+     */
+    SpeechRecognizer createRecognizer(boolean onDevice) {
+        long createStartedAt = SystemClock.elapsedRealtimeNanos();
+        SpeechRecognizer recognizer = onDevice
+            ? SpeechRecognizer.createOnDeviceSpeechRecognizer(bridge.getActivity())
+            : recognitionService != null
+                ? SpeechRecognizer.createSpeechRecognizer(bridge.getActivity(), recognitionService)
+                : SpeechRecognizer.createSpeechRecognizer(bridge.getActivity());
+        performanceStats.recordNanos(PerformanceStats.Metric.RECOGNIZER_CREATE, SystemClock.elapsedRealtimeNanos() - createStartedAt);
+        return recognizer;
+    }
+
+    /**
+     * Parses the optional {@code recognitionService} plugin setting, a flattened component name such
+     * as {@code com.example/.MyRecognitionService}, used instead of the system default recognizer.
+     */
+    private static ComponentName parseRecognitionService(String flattened) {
+        if (flattened == null || flattened.trim().isEmpty()) {
+            return null;
+        }
+        ComponentName component = ComponentName.unflattenFromString(flattened.trim());
+        if (component == null) {
+            Logger.warn(TAG, "Ignoring invalid recognitionService setting: " + flattened);
+        } else {
+            Logger.info(TAG, "Using recognition service " + component.flattenToString());
+        }
+        return component;
+    }
+
+    private File journalFile(String name) {
+        return new File(new File(getContext().getFilesDir(), TRANSCRIPT_JOURNAL_DIRECTORY), name);
+    }
+
+    /**
+     * Runs once per process before any session can start: a journal left by a session that never
+     * finished (the process was killed) is moved aside for {@link #recoverTranscript}, so the next
+     * session does not overwrite it.
+     */
+    private void preserveUnfinishedJournal() {
+        File journal = journalFile(TRANSCRIPT_JOURNAL_FILE);
+        try {
+            TranscriptJournal.Recovered recovered = TranscriptJournal.recover(journal);
+            if (recovered == null) {
+                return;
+            }
+            File target = journalFile(RECOVERED_JOURNAL_FILE);
+            if (target.exists() && !target.delete()) {
+                Logger.warn(TAG, "Unable to replace the recovered transcript journal");
+                return;
+            }
+            if (journal.renameTo(target)) {
+                Logger.info(
+                    TAG,
+                    String.format(
+                        Locale.US,
+                        "Recovered unfinished transcript | sessionId=%d segments=%d",
+                        recovered.sessionId,
+                        recovered.segmentCount
+                    )
+                );
+            }
+        } catch (IOException ex) {
+            Logger.error(TAG, "Failed to inspect the transcript journal", ex);
+        }
+    }
+
+    /**
+     * Deletes the previous session's spill file and, when {@code enabled}, attaches a new one to the
+     * transcript. Without a spill file, segments beyond the in-memory window are dropped.
+     */
+    private void replaceTranscriptSpillLocked(long currentSessionId, boolean enabled) {
+        if (transcriptSpill != null) {
+            transcriptSpill.delete();
+            transcriptSpill = null;
+        }
+        if (!enabled) {
+            return;
+        }
+
+        File directory = new File(getContext().getFilesDir(), TRANSCRIPT_SPILL_DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Logger.warn(TAG, "Unable to create the transcript spill directory; old segments will be dropped.");
+            return;
+        }
+        try {
+            transcriptSpill = TranscriptSpillFile.create(new File(directory, "session-" + currentSessionId + ".utf16"));
+            accumulatedResults.setSpill(transcriptSpill);
+        } catch (IOException ex) {
+            Logger.error(TAG, "Failed to create the transcript spill file; old segments will be dropped.", ex);
+        }
+    }
+
+    /**
+     * Waits until every plugin event dispatched so far has reached {@code notifyListeners}. Used by the
+     * lifecycle tests.
+     */
+    boolean awaitEventsDelivered(long timeoutMs) throws InterruptedException {
+        return eventDispatcher.awaitDelivered(timeoutMs);
+    }
+
+    private void recycleCurrentRecognizerLocked() {
+        if (speechRecognizer != null) {
+            if (speechRecognizerBroken) {
+                recognizerPool.discard(speechRecognizer);
+            } else {
+                recognizerPool.release(speechRecognizer, speechRecognizerUsesOnDevice);
+            }
+            speechRecognizer = null;
+        }
         speechRecognizerUsesOnDevice = false;
-        recognizerGeneration++;
-        speechRecognizer.setRecognitionListener(new SpeechRecognitionListener(sessionId, recognizerGeneration));
+        speechRecognizerBroken = false;
     }
 
     private void destroyCurrentRecognizerLocked() {
         if (speechRecognizer != null) {
-            try {
-                speechRecognizer.cancel();
-            } catch (Exception ignored) {}
-            try {
-                speechRecognizer.destroy();
-            } catch (Exception ignored) {}
+            recognizerPool.discard(speechRecognizer);
             speechRecognizer = null;
         }
         speechRecognizerUsesOnDevice = false;
+        speechRecognizerBroken = false;
     }
 
     private void cancelPendingForceStopLocked() {
@@ -890,7 +1622,8 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
                 boolean shouldFinish;
                 try {
                     lock.lock();
-                    shouldFinish = currentSessionId == sessionId && state != ListeningState.IDLE;
+                    SessionStateMachine.Snapshot snapshot = stateMachine.snapshot();
+                    shouldFinish = snapshot.sessionId == currentSessionId && snapshot.state != SessionStateMachine.ListeningState.IDLE;
                 } finally {
                     lock.unlock();
                 }
@@ -903,42 +1636,152 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
         );
     }
 
-    private JSObject buildForcedPartialResultLocked() {
-        if (previousPartialResults.length() == 0 && accumulatedResults.length() == 0) {
+    private EventDispatcher.PayloadBuilder buildForcedPartialResultLocked() {
+        if (previousPartialResults.isEmpty() && accumulatedResults.isEmpty()) {
             return null;
         }
 
-        JSObject payload = new JSObject();
-        payload.put("forced", true);
-        if (previousPartialResults.length() > 0) {
-            payload.put("matches", previousPartialResults);
-        }
-        String accumulatedText = buildCurrentTranscriptTextLocked();
-        if (!accumulatedText.isEmpty()) {
-            payload.put("accumulatedText", accumulatedText);
-        }
-        return payload;
+        final long seq = deltaPartialResults ? deltaEncoder.nextSequence() : -1;
+        final List<String> matches = previousPartialResults.isEmpty() ? null : copyPartialMatchesLocked();
+        final String accumulatedText = buildCurrentTranscriptTextLocked();
+        return () -> {
+            JSObject payload = new JSObject();
+            payload.put("forced", true);
+            if (seq >= 0) {
+                payload.put("seq", seq);
+            }
+            if (matches != null) {
+                payload.put("matches", new JSArray(matches));
+            }
+            if (!accumulatedText.isEmpty()) {
+                payload.put("accumulatedText", accumulatedText);
+            }
+            return payload;
+        };
+    }
+
+    /**
+     * Builds the final {@code partialResults} event of a session that is not restarted.
+     */
+    private EventDispatcher.PayloadBuilder buildFinalPartialResultLocked(List<String> matches) {
+        final long seq = deltaPartialResults ? deltaEncoder.nextSequence() : -1;
+        final String accumulatedText = accumulatedResults.isEmpty() ? null : accumulatedResults.currentText();
+        return () -> {
+            JSObject payload = new JSObject();
+            payload.put("matches", new JSArray(matches));
+            if (seq >= 0) {
+                payload.put("seq", seq);
+            }
+            if (accumulatedText != null) {
+                payload.put("accumulatedText", accumulatedText);
+            }
+            return payload;
+        };
     }
 
     private String buildCurrentTranscriptTextLocked() {
-        String accumulatedText = accumulatedResults.toString().trim();
-        String latestText = previousPartialResults.length() > 0 ? previousPartialResults.optString(0, "").trim() : "";
+        return accumulatedResults.currentText();
+    }
 
-        if (accumulatedText.isEmpty()) {
-            return latestText;
+    private boolean updatePartialResultsLocked(List<String> matches) {
+        if (!previousPartialResults.update(matches)) {
+            return false;
         }
-        if (latestText.isEmpty()) {
-            return accumulatedText;
+        accumulatedResults.setTail(previousPartialResults.top());
+        if (journalTranscript) {
+            transcriptJournal.checkpointPartial(previousPartialResults.top());
         }
-        return accumulatedText + " " + latestText;
+        return true;
     }
 
-    private void listening(boolean value) {
-        listening = value;
+    private void appendTranscriptSegmentLocked(String segment) {
+        accumulatedResults.append(segment);
+        if (journalTranscript) {
+            transcriptJournal.appendSegment(segment);
+        }
+    }
+
+    private List<String> copyPartialMatchesLocked() {
+        List<String> matches = new ArrayList<>(previousPartialResults.size());
+        for (int i = 0; i < previousPartialResults.size(); i++) {
+            matches.add(previousPartialResults.get(i));
+        }
+        return matches;
+    }
+
+    private JSArray buildPartialMatchesLocked() {
+        JSArray matches = new JSArray();
+        for (int i = 0; i < previousPartialResults.size(); i++) {
+            matches.put(previousPartialResults.get(i));
+        }
+        return matches;
     }
 
     private void resetPartialResultsCache() {
-        previousPartialResults = new JSONArray();
+        previousPartialResults.clear();
+        accumulatedResults.setTail(null);
+        deltaEncoder.resetHypothesis();
+        cancelPendingPartialFlushLocked();
+    }
+
+    /**
+     * Captures what a partial result event needs while the lock is held; the returned builder turns
+     * it into a payload on the event thread.
+     */
+    private EventDispatcher.PayloadBuilder buildPartialResultPayloadLocked(List<String> matches) {
+        PartialResultEvent event = deltaPartialResults
+            ? PartialResultEvent.delta(matches, accumulatedResults, deltaEncoder)
+            : PartialResultEvent.full(matches, accumulatedResults);
+        return () -> event.writeTo(new JSObject());
+    }
+
+    /**
+     * Applies {@code maxPartialEventsPerSecond}: returns the payload to send now, or parks the matches
+     * in a latest-wins slot that a delayed flush sends once the interval has elapsed.
+     */
+    private EventDispatcher.PayloadBuilder takePartialResultPayloadLocked(List<String> matches) {
+        if (maxPartialEventsPerSecond <= 0) {
+            return buildPartialResultPayloadLocked(matches);
+        }
+
+        long now = SystemClock.uptimeMillis();
+        long minIntervalMs = 1000L / maxPartialEventsPerSecond;
+        long waitMs = lastPartialEventAt + minIntervalMs - now;
+        if (partialFlushRunnable == null && waitMs <= 0) {
+            lastPartialEventAt = now;
+            return buildPartialResultPayloadLocked(matches);
+        }
+
+        pendingPartialMatches = matches;
+        if (partialFlushRunnable == null) {
+            final long flushSessionId = stateMachine.snapshot().sessionId;
+            partialFlushRunnable = () -> {
+                EventDispatcher.PayloadBuilder payload = null;
+                try {
+                    lock.lock();
+                    if (!stateMachine.isCurrentSession(flushSessionId) || forceStopped || pendingPartialMatches == null) {
+                        return;
+                    }
+                    payload = buildPartialResultPayloadLocked(pendingPartialMatches);
+                    pendingPartialMatches = null;
+                    partialFlushRunnable = null;
+                    lastPartialEventAt = SystemClock.uptimeMillis();
+                } finally {
+                    lock.unlock();
+                }
+                eventDispatcher.dispatch(PARTIAL_RESULTS_EVENT, payload);
+            };
+            handler.postDelayed(partialFlushRunnable, Math.max(0, waitMs));
+        }
+        return null;
+    }
+
+    private void cancelPendingPartialFlushLocked() {
+        if (partialFlushRunnable != null) {
+            handler.removeCallbacks(partialFlushRunnable);
+            partialFlushRunnable = null;
+        }
+        pendingPartialMatches = null;
     }
 
     private boolean canUseOnDeviceRecognition() {
@@ -947,23 +1790,80 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
         );
     }
 
-    private boolean isLanguageSupported(String requestedLanguage, List<String> candidateLanguages) {
-        if (candidateLanguages == null || candidateLanguages.isEmpty()) {
-            return false;
+    /**
+     * Checks support on the starting session's recognizer when there is one, since the pool holds a single
+     * on-device recognizer and the session already owns it. Standalone queries borrow one from the pool on
+     * the main thread, like every other use of the pool, and hand it back afterwards.
+     */
+    private void checkOnDeviceSupport(String language, SpeechRecognizer sessionRecognizer, RecognitionSupportCallback callback) {
+        if (sessionRecognizer != null) {
+            runSupportCheck(language, sessionRecognizer, callback, null);
+            return;
         }
-
-        String normalizedRequestedLanguage = normalizeLanguageTag(requestedLanguage);
-        for (String candidateLanguage : candidateLanguages) {
-            if (normalizedRequestedLanguage.equals(normalizeLanguageTag(candidateLanguage))) {
-                return true;
+        handler.post(() -> {
+            SpeechRecognizer borrowed = null;
+            try {
+                lock.lock();
+                borrowed = recognizerPool.borrow(true);
+            } catch (UnsupportedOperationException ex) {
+                Logger.debug(TAG, "No on-device recognizer: " + ex.getMessage());
+            } finally {
+                lock.unlock();
             }
-        }
+            if (borrowed == null) {
+                // No on-device recognizer on this device: every language is unsupported.
+                callback.onSupportResult(new RecognitionSupport.Builder().build());
+                return;
+            }
+            runSupportCheck(language, borrowed, callback, borrowed);
+        });
+    }
 
-        return false;
+    /**
+     * Runs the support check on {@code checker}, handing {@code borrowed} back to the pool once it answers.
+     */
+    private void runSupportCheck(
+        String language,
+        SpeechRecognizer checker,
+        RecognitionSupportCallback callback,
+        SpeechRecognizer borrowed
+    ) {
+        Intent intent = buildRecognizerIntent(language, MAX_RESULTS, null, false, 0, true);
+        try {
+            checker.checkRecognitionSupport(
+                intent,
+                mainExecutor(),
+                new RecognitionSupportCallback() {
+                    @Override
+                    public void onSupportResult(RecognitionSupport support) {
+                        releaseSupportChecker(borrowed);
+                        callback.onSupportResult(support);
+                    }
+
+                    @Override
+                    public void onError(int error) {
+                        releaseSupportChecker(borrowed);
+                        callback.onError(error);
+                    }
+                }
+            );
+        } catch (RuntimeException ex) {
+            Logger.error(TAG, "On-device recognition support check failed", ex);
+            releaseSupportChecker(borrowed);
+            callback.onError(SpeechRecognizer.ERROR_CLIENT);
+        }
     }
 
-    private String normalizeLanguageTag(String language) {
-        return language == null ? "" : language.replace('_', '-').toLowerCase(Locale.US);
+    private void releaseSupportChecker(SpeechRecognizer borrowed) {
+        if (borrowed == null) {
+            return;
+        }
+        try {
+            lock.lock();
+            recognizerPool.release(borrowed, true);
+        } finally {
+            lock.unlock();
+        }
     }
 
     private Executor mainExecutor() {
@@ -971,6 +1871,16 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
     }
 
     private void emitListeningState(String stateValue, long currentSessionId, String reason, String errorCode, String status) {
+        eventDispatcher.dispatch(LISTENING_EVENT, () -> buildListeningStatePayload(stateValue, currentSessionId, reason, errorCode, status));
+    }
+
+    private static JSObject buildListeningStatePayload(
+        String stateValue,
+        long currentSessionId,
+        String reason,
+        String errorCode,
+        String status
+    ) {
         JSObject payload = new JSObject();
         payload.put("state", stateValue);
         payload.put("sessionId", currentSessionId);
@@ -981,15 +1891,65 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
         if (status != null) {
             payload.put("status", status);
         }
-        notifyListeners(LISTENING_EVENT, payload);
+        return payload;
+    }
+
+    private void markTimeline(long currentSessionId, SessionTimeline.Mark mark) {
+        timeline.mark(currentSessionId, mark, SystemClock.elapsedRealtimeNanos());
+    }
+
+    /**
+     * Marks {@code mark} and, the first time it is reached in the session, records the time elapsed
+     * since {@code start()} into {@code metric}.
+     */
+    private void markTimelineSinceStart(long currentSessionId, SessionTimeline.Mark mark, PerformanceStats.Metric metric) {
+        long now = SystemClock.elapsedRealtimeNanos();
+        if (timeline.mark(currentSessionId, mark, now)) {
+            long startedAt = timeline.timestamp(currentSessionId, SessionTimeline.Mark.START);
+            performanceStats.recordNanos(metric, now - startedAt);
+        }
+    }
+
+    private static JSObject buildHistogramSummary(LatencyHistogram histogram) {
+        JSObject summary = new JSObject();
+        summary.put("count", histogram.getCount());
+        summary.put("min", histogram.getMin() / 1000.0);
+        summary.put("max", histogram.getMax() / 1000.0);
+        summary.put("mean", histogram.getMean() / 1000.0);
+        summary.put("p50", histogram.getValueAtPercentile(50) / 1000.0);
+        summary.put("p90", histogram.getValueAtPercentile(90) / 1000.0);
+        summary.put("p95", histogram.getValueAtPercentile(95) / 1000.0);
+        summary.put("p99", histogram.getValueAtPercentile(99) / 1000.0);
+        return summary;
+    }
+
+    /**
+     * Converts raw timeline timestamps into milliseconds since {@code start()}, omitting milestones
+     * that were not reached.
+     */
+    private static JSObject buildSessionMetrics(long currentSessionId, long[] marks) {
+        long startedAt = marks[SessionTimeline.Mark.START.ordinal()];
+        JSObject timings = new JSObject();
+        for (SessionTimeline.Mark mark : SessionTimeline.Mark.values()) {
+            long timestamp = marks[mark.ordinal()];
+            if (timestamp != SessionTimeline.UNSET) {
+                timings.put(mark.key, (timestamp - startedAt) / 1_000_000.0);
+            }
+        }
+        JSObject metrics = new JSObject();
+        metrics.put("sessionId", currentSessionId);
+        metrics.put("timings", timings);
+        return metrics;
     }
 
     private void emitErrorEvent(String errorCode, String message, long currentSessionId) {
-        JSObject payload = new JSObject();
-        payload.put("code", errorCode);
-        payload.put("message", message);
-        payload.put("sessionId", currentSessionId);
-        notifyListeners(ERROR_EVENT, payload);
+        eventDispatcher.dispatch(ERROR_EVENT, () -> {
+            JSObject payload = new JSObject();
+            payload.put("code", errorCode);
+            payload.put("message", message);
+            payload.put("sessionId", currentSessionId);
+            return payload;
+        });
     }
 
     private String permissionStateValue(PermissionState state) {
@@ -1009,16 +1969,32 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
     protected void handleOnDestroy() {
         super.handleOnDestroy();
         handler.removeCallbacksAndMessages(null);
+        if (fileTranscriptions != null) {
+            fileTranscriptions.shutdown();
+        }
+        eventDispatcher.shutdown();
         try {
             lock.lock();
             restoreRecognizerBeepIfNeededLocked(mutedForGeneration);
             destroyCurrentRecognizerLocked();
+            releaseStandbyRecognizerLocked();
+            microphoneCapture.stop();
+            captureAudioSource = -1;
+            accumulatedResults.setSpill(null);
+            replaceTranscriptSpillLocked(0, false);
+            if (transcriptJournal != null) {
+                // Left unfinished on purpose: a session cut short here is offered by recoverTranscript().
+                transcriptJournal.close();
+                transcriptJournal = null;
+            }
+            journalTranscript = false;
+            recognizerPool.clear();
+            onDeviceSupportCache.clear();
             activeStartCall = null;
             pendingStopReason = null;
             popupSessionActive = false;
             popupSessionCancelled = false;
-            listening(false);
-            state = ListeningState.IDLE;
+            stateMachine.reset();
         } finally {
             lock.unlock();
         }
@@ -1075,6 +2051,8 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
         private final long listenerGeneration;
         private PluginCall call;
         private boolean partialResults;
+        // Whether this recognizer produced any text, which decides the silence backoff on rollover.
+        private boolean recognizedSpeech = false;
 
         SpeechRecognitionListener(long listenerSessionId, long listenerGeneration) {
             this.listenerSessionId = listenerSessionId;
@@ -1094,8 +2072,18 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
             if (isStale()) {
                 return;
             }
+            markTimelineSinceStart(listenerSessionId, SessionTimeline.Mark.READY_FOR_SPEECH, PerformanceStats.Metric.TIME_TO_READY);
             try {
                 lock.lock();
+                if (restartRequestedAt != 0) {
+                    long gapNanos = SystemClock.elapsedRealtimeNanos() - restartRequestedAt;
+                    performanceStats.recordNanos(
+                        gaplessRestart ? PerformanceStats.Metric.GAPLESS_RESTART_GAP : PerformanceStats.Metric.RESTART_GAP,
+                        gapNanos
+                    );
+                    restartRequestedAt = 0;
+                    Logger.debug(TAG, String.format(Locale.US, "Continuous restart gap | gapless=%s gapMs=%.1f", gaplessRestart, gapNanos / 1e6));
+                }
                 restoreRecognizerBeepIfNeededLocked(listenerGeneration);
             } finally {
                 lock.unlock();
@@ -1103,16 +2091,49 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
         }
 
         @Override
-        public void onBeginningOfSpeech() {}
+        public void onBeginningOfSpeech() {
+            if (!isStale()) {
+                markTimeline(listenerSessionId, SessionTimeline.Mark.BEGINNING_OF_SPEECH);
+            }
+        }
 
         @Override
-        public void onRmsChanged(float rmsdB) {}
+        public void onRmsChanged(float rmsdB) {
+            if (isStale() || !volumeMeter.record(rmsdB, SystemClock.uptimeMillis())) {
+                return;
+            }
+            float level = volumeMeter.getLevel();
+            eventDispatcher.dispatch(VOLUME_CHANGED_EVENT, () -> new JSObject().put("level", level).put("sessionId", listenerSessionId));
+        }
 
         @Override
-        public void onBufferReceived(byte[] buffer) {}
+        public void onBufferReceived(byte[] buffer) {
+            // The plugin's own capture already feeds the ring.
+            if (isStale() || microphoneCapture.isRunning()) {
+                return;
+            }
+            audioCapture.write(buffer);
+        }
 
         @Override
-        public void onEndOfSpeech() {}
+        public void onEndOfSpeech() {
+            if (isStale()) {
+                return;
+            }
+            markTimeline(listenerSessionId, SessionTimeline.Mark.END_OF_SPEECH);
+            try {
+                lock.lock();
+                if (lastAllowForSilence == 0 && !continuousDictationMode) {
+                    // The recognizer stops reading here; keep what follows as pre-roll for the next one.
+                    microphoneCapture.detach();
+                }
+                if (shouldAutoRestartLocked()) {
+                    prepareStandbyRecognizerLocked();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
 
         @Override
         public void onError(int error) {
@@ -1125,31 +2146,31 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
             emitErrorEvent(errorCode, errorMessage, listenerSessionId);
 
             boolean restartContinuous;
+            int restartDelayMs = CONTINUOUS_RESTART_DELAY_MS;
             try {
                 lock.lock();
+                if (error == SpeechRecognizer.ERROR_CLIENT || error == SpeechRecognizer.ERROR_SERVER_DISCONNECTED) {
+                    speechRecognizerBroken = true;
+                }
                 restartContinuous =
-                    continuousPTTMode &&
-                    pttButtonHeld &&
-                    pendingStopReason == null &&
-                    (error == SpeechRecognizer.ERROR_NO_MATCH || error == SpeechRecognizer.ERROR_SPEECH_TIMEOUT);
-
-                if (restartContinuous && previousPartialResults.length() > 0) {
-                    String lastPartial = previousPartialResults.optString(0, "").trim();
-                    if (!lastPartial.isEmpty()) {
-                        if (accumulatedResults.length() > 0) {
-                            accumulatedResults.append(" ");
-                        }
-                        accumulatedResults.append(lastPartial);
+                    shouldAutoRestartLocked() && (error == SpeechRecognizer.ERROR_NO_MATCH || error == SpeechRecognizer.ERROR_SPEECH_TIMEOUT);
+
+                if (restartContinuous) {
+                    if (previousPartialResults.isEmpty()) {
+                        restartDelayMs = nextSilentRestartDelayLocked();
+                    } else {
+                        appendTranscriptSegmentLocked(previousPartialResults.top());
+                        resetPartialResultsCache();
+                        stateMachine.setListening(listenerSessionId, false);
+                        consecutiveSilentRestarts = 0;
                     }
-                    resetPartialResultsCache();
-                    listening(false);
                 }
             } finally {
                 lock.unlock();
             }
 
             if (restartContinuous) {
-                scheduleContinuousRestart(listenerSessionId);
+                restartContinuousSession(listenerSessionId, restartDelayMs);
                 return;
             }
 
@@ -1168,6 +2189,11 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
             if (isStale()) {
                 return;
             }
+            markTimeline(listenerSessionId, SessionTimeline.Mark.RESULTS);
+            long stopRequestedAt = timeline.timestamp(listenerSessionId, SessionTimeline.Mark.STOP_REQUESTED);
+            if (stopRequestedAt != SessionTimeline.UNSET) {
+                performanceStats.recordNanos(PerformanceStats.Metric.STOP_TO_FINAL, SystemClock.elapsedRealtimeNanos() - stopRequestedAt);
+            }
 
             ArrayList<String> matches = buildMatchesWithUnstableText(results);
             if (matches == null) {
@@ -1176,37 +2202,33 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
             String resultText = matches.isEmpty() ? "" : matches.get(0);
 
             boolean restartContinuous;
-            JSObject restartPayload = null;
-            JSObject finalPayload = null;
+            int restartDelayMs = CONTINUOUS_RESTART_DELAY_MS;
+            EventDispatcher.PayloadBuilder restartPayload = null;
+            EventDispatcher.PayloadBuilder finalPayload = null;
             try {
                 lock.lock();
                 cancelPendingForceStopLocked();
-                previousPartialResults = new JSONArray(matches);
-                restartContinuous = continuousPTTMode && pttButtonHeld && pendingStopReason == null;
+                cancelPendingPartialFlushLocked();
+                updatePartialResultsLocked(matches);
+                restartContinuous = shouldAutoRestartLocked();
 
                 if (restartContinuous) {
-                    if (!resultText.trim().isEmpty()) {
-                        if (accumulatedResults.length() > 0) {
-                            accumulatedResults.append(" ");
-                        }
-                        accumulatedResults.append(resultText.trim());
+                    if (resultText.trim().isEmpty()) {
+                        restartDelayMs = nextSilentRestartDelayLocked();
+                    } else {
+                        consecutiveSilentRestarts = 0;
                     }
-                    restartPayload = new JSObject();
-                    restartPayload.put("matches", new JSArray(matches));
-                    restartPayload.put("accumulated", accumulatedResults.toString().trim());
-                    restartPayload.put("isRestarting", true);
+                    appendTranscriptSegmentLocked(resultText);
+                    PartialResultEvent event = PartialResultEvent.restart(
+                        matches,
+                        accumulatedResults,
+                        deltaPartialResults ? deltaEncoder : null
+                    );
+                    restartPayload = () -> event.writeTo(new JSObject());
                     resetPartialResultsCache();
-                    listening(false);
+                    stateMachine.setListening(listenerSessionId, false);
                 } else if (partialResults) {
-                    finalPayload = new JSObject();
-                    finalPayload.put("matches", new JSArray(matches));
-                    if (accumulatedResults.length() > 0) {
-                        String accumulatedText = accumulatedResults.toString().trim();
-                        if (!resultText.trim().isEmpty()) {
-                            accumulatedText = accumulatedText + " " + resultText.trim();
-                        }
-                        finalPayload.put("accumulatedText", accumulatedText.trim());
-                    }
+                    finalPayload = buildFinalPartialResultLocked(matches);
                 }
             } finally {
                 lock.unlock();
@@ -1214,16 +2236,16 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
 
             if (restartContinuous) {
                 if (restartPayload != null) {
-                    notifyListeners(PARTIAL_RESULTS_EVENT, restartPayload);
+                    eventDispatcher.dispatch(PARTIAL_RESULTS_EVENT, restartPayload);
                 }
-                scheduleContinuousRestart(listenerSessionId);
+                restartContinuousSession(listenerSessionId, restartDelayMs);
                 return;
             }
 
             if (call != null && !partialResults) {
                 call.resolve(new JSObject().put("status", "success").put("matches", new JSArray(matches)));
             } else if (finalPayload != null) {
-                notifyListeners(PARTIAL_RESULTS_EVENT, finalPayload);
+                eventDispatcher.dispatch(PARTIAL_RESULTS_EVENT, finalPayload);
             }
 
             finishSession(listenerSessionId, pendingStopReason != null ? pendingStopReason : "results", null);
@@ -1234,89 +2256,104 @@ public class SpeechRecognitionPlugin extends Plugin implements Constants {
             if (isStale() || forceStopped) {
                 return;
             }
+            markTimelineSinceStart(listenerSessionId, SessionTimeline.Mark.FIRST_PARTIAL, PerformanceStats.Metric.TIME_TO_FIRST_PARTIAL);
 
             ArrayList<String> matches = buildMatchesWithUnstableText(partialResultsBundle);
             if (matches == null || matches.isEmpty()) {
                 return;
             }
+            recognizedSpeech = true;
 
-            JSObject payload = null;
+            EventDispatcher.PayloadBuilder payload = null;
             try {
                 lock.lock();
-                JSArray matchesJSON = new JSArray(matches);
-                JSONArray nextPartialResults = new JSONArray(matches);
-                if (!previousPartialResults.toString().equals(nextPartialResults.toString())) {
-                    previousPartialResults = nextPartialResults;
-                    payload = new JSObject();
-                    payload.put("matches", matchesJSON);
-                    if (accumulatedResults.length() > 0) {
-                        payload.put("accumulated", accumulatedResults.toString().trim());
-                    }
+                if (updatePartialResultsLocked(matches)) {
+                    payload = takePartialResultPayloadLocked(matches);
                 }
             } finally {
                 lock.unlock();
             }
 
             if (payload != null) {
-                notifyListeners(PARTIAL_RESULTS_EVENT, payload);
+                eventDispatcher.dispatch(PARTIAL_RESULTS_EVENT, payload);
             }
         }
 
         @Override
         public void onSegmentResults(Bundle results) {
+            if (isStale()) {
+                return;
+            }
             ArrayList<String> matches = results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
             if (matches == null) {
                 return;
             }
-            notifyListeners(SEGMENT_RESULTS_EVENT, new JSObject().put("matches", new JSArray(matches)));
+            if (!matches.isEmpty()) {
+                recognizedSpeech = true;
+                try {
+                    lock.lock();
+                    if (continuousDictationMode) {
+                        // Segments are final, so fold them into the bounded transcript right away.
+                        cancelPendingPartialFlushLocked();
+                        appendTranscriptSegmentLocked(matches.get(0));
+                        resetPartialResultsCache();
+                        consecutiveSilentRestarts = 0;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            eventDispatcher.dispatch(SEGMENT_RESULTS_EVENT, () -> new JSObject().put("matches", new JSArray(matches)));
         }
 
         @Override
         public void onEndOfSegmentedSession() {
-            notifyListeners(END_OF_SEGMENT_EVENT, new JSObject());
-        }
-
-        @Override
-        public void onEvent(int eventType, Bundle params) {}
+            if (isStale()) {
+                return;
+            }
+            eventDispatcher.dispatch(END_OF_SEGMENT_EVENT, JSObject::new);
 
-        private boolean isStale() {
+            boolean rollover;
+            int restartDelayMs = CONTINUOUS_RESTART_DELAY_MS;
+            String stopReason;
             try {
                 lock.lock();
-                return listenerSessionId != sessionId || listenerGeneration != recognizerGeneration;
+                rollover = continuousDictationMode && shouldAutoRestartLocked();
+                stopReason = pendingStopReason;
+                if (rollover) {
+                    if (recognizedSpeech) {
+                        consecutiveSilentRestarts = 0;
+                    } else {
+                        restartDelayMs = nextSilentRestartDelayLocked();
+                    }
+                    resetPartialResultsCache();
+                    stateMachine.setListening(listenerSessionId, false);
+                }
             } finally {
                 lock.unlock();
             }
-        }
-
-        private ArrayList<String> buildMatchesWithUnstableText(Bundle resultsBundle) {
-            ArrayList<String> matches = resultsBundle.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
-            if (matches == null || matches.isEmpty()) {
-                return matches;
-            }
 
-            String unstableText = resultsBundle.getString("android.speech.extra.UNSTABLE_TEXT");
-            if (unstableText == null) {
-                return matches;
-            }
-
-            String trimmedUnstable = unstableText.trim();
-            if (trimmedUnstable.isEmpty()) {
-                return matches;
+            if (rollover) {
+                // The recognizer ended its segmented session (e.g. a service-side time limit); roll over
+                // into a new one so dictation keeps going, backing off when it heard nothing.
+                restartContinuousSession(listenerSessionId, restartDelayMs);
+            } else if (stopReason != null) {
+                finishSession(listenerSessionId, stopReason, null);
             }
+        }
 
-            String firstMatch = matches.get(0);
-            if (firstMatch == null) {
-                return matches;
-            }
+        @Override
+        public void onEvent(int eventType, Bundle params) {}
 
-            String trimmedFirstMatch = firstMatch.trim();
-            if (trimmedFirstMatch.equals(trimmedUnstable) || trimmedFirstMatch.endsWith(" " + trimmedUnstable)) {
-                return matches;
-            }
+        private boolean isStale() {
+            return !stateMachine.isCurrent(listenerSessionId, listenerGeneration);
+        }
 
-            ArrayList<String> mergedMatches = new ArrayList<>(matches);
-            mergedMatches.set(0, trimmedFirstMatch + " " + trimmedUnstable);
-            return mergedMatches;
+        private ArrayList<String> buildMatchesWithUnstableText(Bundle resultsBundle) {
+            return UnstableTextMerger.merge(
+                resultsBundle.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION),
+                resultsBundle.getString("android.speech.extra.UNSTABLE_TEXT")
+            );
         }
     }
 
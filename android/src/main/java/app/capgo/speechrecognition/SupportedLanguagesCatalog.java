@@ -0,0 +1,111 @@
+package app.capgo.speechrecognition;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import com.getcapacitor.Logger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+/**
+ * Persists the supported-languages list reported by the recognition service, keyed by the
+ * service package version so a stored list is only refreshed after that package is updated.
+ */
+class SupportedLanguagesCatalog {
+
+    private static final String TAG = "SpeechRecognition";
+    private static final String PREFS_NAME = "CapgoSpeechRecognitionLanguages";
+    private static final String KEY_LANGUAGES = "languages";
+    private static final String KEY_LANGUAGE_PREFERENCE = "languagePreference";
+    private static final String KEY_SERVICE_VERSION = "serviceVersion";
+
+    private final Context context;
+    private final String servicePackage;
+    private SharedPreferences preferences;
+    private List<String> languages;
+    private String languagePreference;
+    private String storedServiceVersion;
+
+    SupportedLanguagesCatalog(Context context, String servicePackage) {
+        this.context = context.getApplicationContext();
+        this.servicePackage = servicePackage;
+    }
+
+    /**
+     * Reads the persisted catalog. Safe to call more than once; only the first call touches disk.
+     */
+    synchronized void load() {
+        if (preferences != null) {
+            return;
+        }
+        preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        storedServiceVersion = preferences.getString(KEY_SERVICE_VERSION, null);
+        languagePreference = preferences.getString(KEY_LANGUAGE_PREFERENCE, null);
+        String storedLanguages = preferences.getString(KEY_LANGUAGES, null);
+        if (storedLanguages == null) {
+            return;
+        }
+        try {
+            JSONArray array = new JSONArray(storedLanguages);
+            List<String> parsed = new ArrayList<>(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                parsed.add(array.getString(i));
+            }
+            languages = Collections.unmodifiableList(parsed);
+        } catch (JSONException ex) {
+            Logger.warn(TAG, "Discarding unreadable supported languages catalog: " + ex.getMessage());
+            languages = null;
+        }
+    }
+
+    synchronized List<String> getLanguages() {
+        load();
+        return languages;
+    }
+
+    synchronized String getLanguagePreference() {
+        load();
+        return languagePreference;
+    }
+
+    /**
+     * Returns {@code true} when the recognition service changed since the catalog was stored.
+     */
+    synchronized boolean isStale() {
+        load();
+        return !currentServiceVersion().equals(storedServiceVersion);
+    }
+
+    synchronized void update(List<String> supportedLanguages, String preference) {
+        load();
+        languages = Collections.unmodifiableList(new ArrayList<>(supportedLanguages));
+        languagePreference = preference;
+        storedServiceVersion = currentServiceVersion();
+        SharedPreferences.Editor editor = preferences
+            .edit()
+            .putString(KEY_LANGUAGES, new JSONArray(languages).toString())
+            .putString(KEY_SERVICE_VERSION, storedServiceVersion);
+        if (preference != null) {
+            editor.putString(KEY_LANGUAGE_PREFERENCE, preference);
+        } else {
+            editor.remove(KEY_LANGUAGE_PREFERENCE);
+        }
+        editor.apply();
+    }
+
+    @SuppressWarnings("deprecation")
+    private String currentServiceVersion() {
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(servicePackage, 0);
+            long versionCode = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P ? info.getLongVersionCode() : info.versionCode;
+            return versionCode + ":" + info.lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException ex) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package app.capgo.speechrecognition;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONArray;
+
+/**
+ * Answers {@code getSupportedLanguages} calls from the persisted catalog, or queues them behind a
+ * single in-flight language details broadcast and resolves every waiting call from its result.
+ */
+class SupportedLanguagesQuery implements Receiver.Listener, Constants {
+
+    interface Broadcaster {
+        void send(Receiver receiver);
+    }
+
+    private final SupportedLanguagesCatalog catalog;
+    private final Broadcaster broadcaster;
+    private final List<PluginCall> waitingCalls = new ArrayList<>();
+    private boolean broadcastInFlight = false;
+
+    SupportedLanguagesQuery(SupportedLanguagesCatalog catalog, Broadcaster broadcaster) {
+        this.catalog = catalog;
+        this.broadcaster = broadcaster;
+    }
+
+    void query(PluginCall call) {
+        List<String> storedLanguages = catalog.getLanguages();
+        if (storedLanguages != null) {
+            call.resolve(buildResult(storedLanguages, catalog.getLanguagePreference()));
+            refreshIfStale();
+            return;
+        }
+        request(call);
+    }
+
+    /**
+     * Re-queries the recognition service in the background when it was updated since the stored
+     * catalog was written. Does nothing when no catalog was stored yet.
+     */
+    void refreshIfStale() {
+        if (catalog.getLanguages() != null && catalog.isStale()) {
+            request(null);
+        }
+    }
+
+    @Override
+    public void onSupportedLanguages(List<String> languages, String languagePreference) {
+        catalog.update(languages, languagePreference);
+        JSObject result = buildResult(languages, languagePreference);
+        for (PluginCall call : drainWaitingCalls()) {
+            call.resolve(result);
+        }
+    }
+
+    @Override
+    public void onLanguagesUnavailable() {
+        for (PluginCall call : drainWaitingCalls()) {
+            call.reject(LANGUAGE_ERROR);
+        }
+    }
+
+    private void request(PluginCall call) {
+        boolean sendBroadcast;
+        synchronized (this) {
+            if (call != null) {
+                waitingCalls.add(call);
+            }
+            sendBroadcast = !broadcastInFlight;
+            broadcastInFlight = true;
+        }
+        if (!sendBroadcast) {
+            return;
+        }
+
+        try {
+            broadcaster.send(new Receiver(this));
+        } catch (Exception ex) {
+            onLanguagesUnavailable();
+        }
+    }
+
+    private synchronized List<PluginCall> drainWaitingCalls() {
+        List<PluginCall> calls = new ArrayList<>(waitingCalls);
+        waitingCalls.clear();
+        broadcastInFlight = false;
+        return calls;
+    }
+
+    private JSObject buildResult(List<String> languages, String languagePreference) {
+        JSObject result = new JSObject().put("languages", new JSONArray(languages));
+        if (languagePreference != null) {
+            result.put("languagePreference", languagePreference);
+        }
+        return result;
+    }
+}
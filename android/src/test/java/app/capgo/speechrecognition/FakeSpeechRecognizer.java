@@ -0,0 +1,113 @@
+package app.capgo.speechrecognition;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.speech.RecognitionListener;
+import android.speech.SpeechRecognizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Scriptable stand-in for a platform {@link SpeechRecognizer}.
+ *
+ * The plugin talks to a stub-only mock, so no invocation history is retained, while the test emits
+ * recognizer callbacks on cue through the listener the plugin attached last.
+ */
+final class FakeSpeechRecognizer {
+
+    final SpeechRecognizer recognizer;
+    final boolean onDevice;
+    private RecognitionListener listener;
+    private Intent lastIntent;
+    private boolean listening = false;
+    private boolean destroyed = false;
+    private int startCount = 0;
+
+    FakeSpeechRecognizer(boolean onDevice) {
+        this.onDevice = onDevice;
+        this.recognizer = mock(SpeechRecognizer.class, withSettings().stubOnly());
+        doAnswer((invocation) -> {
+            listener = invocation.getArgument(0);
+            return null;
+        })
+            .when(recognizer)
+            .setRecognitionListener(any());
+        doAnswer((invocation) -> {
+            lastIntent = invocation.getArgument(0);
+            listening = true;
+            startCount++;
+            return null;
+        })
+            .when(recognizer)
+            .startListening(any());
+        doAnswer((invocation) -> {
+            listening = false;
+            return null;
+        })
+            .when(recognizer)
+            .stopListening();
+        doAnswer((invocation) -> {
+            listening = false;
+            return null;
+        })
+            .when(recognizer)
+            .cancel();
+        doAnswer((invocation) -> {
+            listening = false;
+            destroyed = true;
+            listener = null;
+            return null;
+        })
+            .when(recognizer)
+            .destroy();
+    }
+
+    RecognitionListener listener() {
+        return listener;
+    }
+
+    Intent lastIntent() {
+        return lastIntent;
+    }
+
+    boolean isListening() {
+        return listening;
+    }
+
+    boolean isDestroyed() {
+        return destroyed;
+    }
+
+    int startCount() {
+        return startCount;
+    }
+
+    void readyForSpeech() {
+        listener.onReadyForSpeech(new Bundle());
+        listener.onBeginningOfSpeech();
+    }
+
+    void partialResults(String... matches) {
+        listener.onPartialResults(results(matches));
+    }
+
+    void results(String... matches) {
+        listener.onEndOfSpeech();
+        listener.onResults(results(matches));
+    }
+
+    void error(int error) {
+        listener.onError(error);
+    }
+
+    static Bundle results(String... matches) {
+        Bundle bundle = new Bundle();
+        bundle.putStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION, new ArrayList<>(Arrays.asList(matches)));
+        return bundle;
+    }
+}
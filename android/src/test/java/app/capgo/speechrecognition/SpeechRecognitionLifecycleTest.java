@@ -0,0 +1,384 @@
+package app.capgo.speechrecognition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ResolveInfo;
+import android.content.pm.ServiceInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.speech.RecognitionListener;
+import android.speech.RecognitionService;
+import android.speech.SpeechRecognizer;
+import android.webkit.WebView;
+import androidx.appcompat.app.AppCompatActivity;
+import com.getcapacitor.Bridge;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.MessageHandler;
+import com.getcapacitor.PermissionState;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginConfig;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+/**
+ * Drives the plugin through thousands of start/stop/forceStop/continuous PTT sessions against
+ * {@link FakeSpeechRecognizer} and reports throughput, leaked listeners and stray callbacks.
+ *
+ * The number of sessions can be changed with {@code -PlifecycleSessions=N}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class SpeechRecognitionLifecycleTest {
+
+    private static final int SESSIONS = Integer.getInteger("lifecycleSessions", 2000);
+    private static final long EVENT_TIMEOUT_MS = 5000;
+
+    private HarnessPlugin plugin;
+    private ShadowLooper mainLooper;
+    private final Set<String> answeredCalls = ConcurrentHashMap.newKeySet();
+    private final List<WeakReference<RecognitionListener>> sessionListeners = new ArrayList<>();
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+    private MessageHandler messageHandler;
+    private PluginCall startCall;
+    private int strayCallbacks = 0;
+    private int callbackId = 0;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.getApplication();
+        ResolveInfo service = new ResolveInfo();
+        service.serviceInfo = new ServiceInfo();
+        service.serviceInfo.packageName = "app.capgo.speechrecognition.fake";
+        service.serviceInfo.name = "FakeRecognitionService";
+        shadowOf(context.getPackageManager()).addResolveInfoForIntent(new Intent(RecognitionService.SERVICE_INTERFACE), service);
+
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        WebView webView = mock(WebView.class);
+        when(webView.post(any())).thenAnswer((invocation) -> mainHandler.post(invocation.getArgument(0)));
+        // Bridge.getActivity() returns an AppCompatActivity, which needs an AppCompat theme to be created.
+        ActivityController<AppCompatActivity> controller = Robolectric.buildActivity(AppCompatActivity.class);
+        controller.get().setTheme(androidx.appcompat.R.style.Theme_AppCompat);
+        AppCompatActivity activity = controller.setup().get();
+        Bridge bridge = mock(Bridge.class);
+        when(bridge.getContext()).thenReturn(context);
+        when(bridge.getActivity()).thenReturn(activity);
+        when(bridge.getWebView()).thenReturn(webView);
+
+        messageHandler = mock(MessageHandler.class);
+        doAnswer((invocation) -> {
+            PluginCall answered = invocation.getArgument(0);
+            if (!answeredCalls.add(answered.getCallbackId())) {
+                failures.add("call " + answered.getCallbackId() + " (" + answered.getMethodName() + ") was answered twice");
+            }
+            return null;
+        })
+            .when(messageHandler)
+            .sendResponseMessage(any(), any(), any());
+
+        mainLooper = shadowOf(Looper.getMainLooper());
+        plugin = new HarnessPlugin();
+        plugin.setBridge(bridge);
+        plugin.load();
+        mainLooper.idle();
+    }
+
+    @After
+    public void tearDown() {
+        plugin.handleOnDestroy();
+    }
+
+    @Test
+    public void sustainsThousandsOfSessionsWithoutLeaksOrStrayCallbacks() throws Exception {
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < SESSIONS; i++) {
+            long sessionId = i + 1;
+            RecognitionListener listener = runSession(i);
+            sessionListeners.add(new WeakReference<>(listener));
+            verifySessionFinished(sessionId);
+            if (!answeredCalls.contains(startCall.getCallbackId())) {
+                failures.add("session " + sessionId + ": start() was never answered");
+            }
+            checkForStrayCallbacks(listener);
+        }
+        double elapsedMs = (System.nanoTime() - startedAt) / 1_000_000.0;
+
+        int leakedListeners = countLeakedListeners();
+        System.out.printf(
+            Locale.US,
+            "Lifecycle harness: %d sessions in %.1f ms (%.0f sessions/s), %d recognizers created, %d leaked listeners, %d stray callbacks%n",
+            SESSIONS,
+            elapsedMs,
+            SESSIONS / (elapsedMs / 1000.0),
+            plugin.created.size(),
+            leakedListeners,
+            strayCallbacks
+        );
+
+        assertTrue("Lifecycle failures: " + failures.subList(0, Math.min(10, failures.size())), failures.isEmpty());
+        assertEquals("Stray callbacks", 0, strayCallbacks);
+        assertEquals("Leaked listeners", 0, leakedListeners);
+    }
+
+    /**
+     * Runs one scripted session and returns the listener it was served by.
+     */
+    private RecognitionListener runSession(int index) throws InterruptedException {
+        switch (index % 6) {
+            case 0:
+                return runStoppedSession();
+            case 1:
+                return runForceStoppedSession();
+            case 2:
+                return runSilentSession();
+            case 3:
+                return runContinuousPTTSession(false);
+            case 4:
+                return runContinuousPTTSession(true);
+            default:
+                return runFinalResultSession();
+        }
+    }
+
+    private RecognitionListener runStoppedSession() throws InterruptedException {
+        start(new JSObject().put("partialResults", true));
+        settle();
+        FakeSpeechRecognizer fake = activeRecognizer();
+        RecognitionListener listener = fake.listener();
+        fake.readyForSpeech();
+        fake.partialResults("hello");
+        fake.partialResults("hello world");
+        plugin.stop(call("stop", new JSObject()));
+        settle();
+        fake.results("hello world");
+        return finish(listener);
+    }
+
+    private RecognitionListener runForceStoppedSession() throws InterruptedException {
+        start(new JSObject().put("partialResults", true));
+        settle();
+        FakeSpeechRecognizer fake = activeRecognizer();
+        RecognitionListener listener = fake.listener();
+        fake.readyForSpeech();
+        fake.partialResults("force");
+        plugin.forceStop(call("forceStop", new JSObject().put("timeout", 100)));
+        settle();
+        // The fake ignores stopListening(), so the force-stop timeout has to end the session.
+        mainLooper.idleFor(Duration.ofMillis(150));
+        return finish(listener);
+    }
+
+    private RecognitionListener runSilentSession() throws InterruptedException {
+        start(new JSObject().put("partialResults", true));
+        settle();
+        FakeSpeechRecognizer fake = activeRecognizer();
+        RecognitionListener listener = fake.listener();
+        fake.readyForSpeech();
+        fake.error(SpeechRecognizer.ERROR_SPEECH_TIMEOUT);
+        return finish(listener);
+    }
+
+    private RecognitionListener runContinuousPTTSession(boolean gapless) throws InterruptedException {
+        plugin.setPTTState(call("setPTTState", new JSObject().put("held", true)));
+        start(new JSObject().put("partialResults", true).put("continuousPTT", true).put("gaplessRestart", gapless));
+        settle();
+        FakeSpeechRecognizer fake = activeRecognizer();
+        RecognitionListener listener = fake.listener();
+        fake.readyForSpeech();
+        fake.partialResults("first");
+        fake.results("first segment");
+        if (gapless) {
+            // The standby recognizer must already be listening, without waiting for the restart delay.
+            FakeSpeechRecognizer standby = activeRecognizer();
+            if (standby == fake || !standby.isListening()) {
+                failures.add("gapless restart did not switch to a listening standby recognizer");
+            }
+        } else {
+            mainLooper.idleFor(Duration.ofMillis(150));
+        }
+        settle();
+
+        FakeSpeechRecognizer restarted = activeRecognizer();
+        RecognitionListener restartedListener = restarted.listener();
+        restarted.readyForSpeech();
+        restarted.partialResults("second");
+        plugin.setPTTState(call("setPTTState", new JSObject().put("held", false)));
+        plugin.stop(call("stop", new JSObject()));
+        settle();
+        restarted.results("second segment");
+        return finish(restartedListener);
+    }
+
+    private RecognitionListener runFinalResultSession() throws InterruptedException {
+        start(new JSObject());
+        settle();
+        FakeSpeechRecognizer fake = activeRecognizer();
+        RecognitionListener listener = fake.listener();
+        fake.readyForSpeech();
+        fake.results("final");
+        return finish(listener);
+    }
+
+    private RecognitionListener finish(RecognitionListener listener) throws InterruptedException {
+        // Let every fallback and beep-restore timer of the session run out.
+        mainLooper.idleFor(Duration.ofSeconds(1));
+        settle();
+        return listener;
+    }
+
+    private void verifySessionFinished(long sessionId) {
+        int stopped = 0;
+        int ready = 0;
+        for (Event event : plugin.events) {
+            if (event.sessionId != sessionId) {
+                continue;
+            }
+            if (Constants.LISTENING_EVENT.equals(event.name) && "stopped".equals(event.state)) {
+                stopped++;
+            } else if (Constants.READY_FOR_NEXT_SESSION_EVENT.equals(event.name)) {
+                ready++;
+            }
+        }
+        if (stopped != 1 || ready != 1) {
+            failures.add("session " + sessionId + ": " + stopped + " stopped and " + ready + " readyForNextSession events");
+        }
+        plugin.events.clear();
+    }
+
+    /**
+     * Replays callbacks on a finished session's listener; none of them may reach JS.
+     */
+    private void checkForStrayCallbacks(RecognitionListener listener) throws InterruptedException {
+        if (listener == null) {
+            return;
+        }
+        listener.onReadyForSpeech(null);
+        listener.onRmsChanged(10f);
+        listener.onPartialResults(FakeSpeechRecognizer.results("stray"));
+        listener.onResults(FakeSpeechRecognizer.results("stray"));
+        listener.onError(SpeechRecognizer.ERROR_CLIENT);
+        settle();
+        strayCallbacks += plugin.events.size();
+        plugin.events.clear();
+    }
+
+    /**
+     * Counts listeners of finished sessions that are still reachable from anything other than an
+     * idle pooled recognizer.
+     */
+    private int countLeakedListeners() {
+        int pooled = 0;
+        for (FakeSpeechRecognizer fake : plugin.created) {
+            if (!fake.isDestroyed() && fake.listener() != null) {
+                pooled++;
+            }
+        }
+
+        int alive = 0;
+        for (int attempt = 0; attempt < 5; attempt++) {
+            System.gc();
+            alive = 0;
+            for (WeakReference<RecognitionListener> reference : sessionListeners) {
+                if (reference.get() != null) {
+                    alive++;
+                }
+            }
+            if (alive <= pooled) {
+                break;
+            }
+        }
+        return Math.max(0, alive - pooled);
+    }
+
+    private FakeSpeechRecognizer activeRecognizer() {
+        FakeSpeechRecognizer active = null;
+        for (FakeSpeechRecognizer fake : plugin.created) {
+            if (fake.isListening()) {
+                assertTrue("More than one recognizer is listening", active == null);
+                active = fake;
+            }
+        }
+        assertTrue("No recognizer is listening", active != null);
+        return active;
+    }
+
+    private void settle() throws InterruptedException {
+        mainLooper.idle();
+        assertTrue("Events were not delivered in time", plugin.awaitEventsDelivered(EVENT_TIMEOUT_MS));
+    }
+
+    private void start(JSObject options) {
+        startCall = call("start", options);
+        plugin.start(startCall);
+    }
+
+    private PluginCall call(String methodName, JSObject data) {
+        return new PluginCall(messageHandler, "SpeechRecognition", Integer.toString(++callbackId), methodName, data);
+    }
+
+    private static final class Event {
+
+        final String name;
+        final long sessionId;
+        final String state;
+
+        Event(String name, JSObject data) {
+            this.name = name;
+            this.sessionId = data.optLong("sessionId", -1);
+            this.state = data.optString("state", null);
+        }
+    }
+
+    private static final class HarnessPlugin extends SpeechRecognitionPlugin {
+
+        final List<FakeSpeechRecognizer> created = new ArrayList<>();
+        final ConcurrentLinkedQueue<Event> events = new ConcurrentLinkedQueue<>();
+        private final PluginConfig config = mock(PluginConfig.class);
+
+        @Override
+        SpeechRecognizer createRecognizer(boolean onDevice) {
+            FakeSpeechRecognizer fake = new FakeSpeechRecognizer(onDevice);
+            created.add(fake);
+            return fake.recognizer;
+        }
+
+        @Override
+        public PluginConfig getConfig() {
+            return config;
+        }
+
+        @Override
+        public PermissionState getPermissionState(String alias) {
+            return PermissionState.GRANTED;
+        }
+
+        @Override
+        protected void notifyListeners(String eventName, JSObject data) {
+            events.add(new Event(eventName, data));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package app.capgo.speechrecognition;
+
+/**
+ * Deterministic dictation-like text for the benchmarks.
+ */
+final class BenchmarkText {
+
+    private static final String[] WORDS = {
+        "the",
+        "quick",
+        "brown",
+        "fox",
+        "jumps",
+        "over",
+        "lazy",
+        "dog",
+        "while",
+        "speech",
+        "recognition",
+        "keeps",
+        "listening",
+        "for",
+        "another",
+        "sentence",
+    };
+
+    private BenchmarkText() {}
+
+    static String word(int index) {
+        return WORDS[index % WORDS.length];
+    }
+
+    /**
+     * Returns a segment of {@code words} words starting at the given word index.
+     */
+    static String segment(int start, int words) {
+        StringBuilder segment = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                segment.append(' ');
+            }
+            segment.append(word(start + i));
+        }
+        return segment.toString();
+    }
+}
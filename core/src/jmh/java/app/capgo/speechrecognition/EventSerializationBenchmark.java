@@ -0,0 +1,56 @@
+package app.capgo.speechrecognition;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Captures a {@code partialResults} event and serializes it the way the bridge does, with
+ * {@code toString()} on the payload, for full and delta payloads over transcripts of growing size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventSerializationBenchmark {
+
+    @Param({ "0", "100", "1000" })
+    public int accumulatedSegments;
+
+    private final TranscriptBuffer transcript = new TranscriptBuffer();
+    private final PartialResultsDeltaEncoder encoder = new PartialResultsDeltaEncoder();
+    private final ArrayList<String> matches = new ArrayList<>();
+    private final ArrayList<String> nextMatches = new ArrayList<>();
+    private boolean flip = false;
+
+    @Setup
+    public void setUp() {
+        for (int s = 0; s < accumulatedSegments; s++) {
+            transcript.append(BenchmarkText.segment(s, 12));
+        }
+        for (int a = 0; a < 5; a++) {
+            matches.add(BenchmarkText.segment(a, 10));
+            nextMatches.add(BenchmarkText.segment(a, 11));
+        }
+        transcript.setTail(matches.get(0));
+    }
+
+    @Benchmark
+    public String full() throws Exception {
+        return PartialResultEvent.full(matches, transcript).writeTo(new JSONObject()).toString();
+    }
+
+    @Benchmark
+    public String delta() throws Exception {
+        // Alternate between two hypotheses so every event carries a suffix, as during dictation.
+        flip = !flip;
+        return PartialResultEvent.delta(flip ? nextMatches : matches, transcript, encoder).writeTo(new JSONObject()).toString();
+    }
+}
@@ -0,0 +1,110 @@
+package app.capgo.speechrecognition;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Replays the partial results of one utterance through the same steps {@code onPartialResults} runs:
+ * unstable text merge, change detection, transcript tail update and event capture.
+ *
+ * {@link #baseline} replays the same utterance through the original path, which wrapped every
+ * partial in a {@code JSONArray}, compared it with the previous one through {@code toString()} and
+ * built the payload under the lock. It ignores {@code mode}. Run with {@code -prof gc} to compare
+ * allocation rates as well as time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PartialResultsBenchmark {
+
+    @Param({ "20", "200" })
+    public int words;
+
+    @Param({ "full", "delta" })
+    public String mode;
+
+    @Param({ "1", "5" })
+    public int alternatives;
+
+    private final ArrayList<ArrayList<String>> partials = new ArrayList<>();
+    private final ArrayList<String> unstableTexts = new ArrayList<>();
+    private final PartialHypotheses hypotheses = new PartialHypotheses();
+    private final TranscriptBuffer transcript = new TranscriptBuffer();
+    private final PartialResultsDeltaEncoder encoder = new PartialResultsDeltaEncoder();
+    private final StringBuilder baselineAccumulated = new StringBuilder();
+
+    @Setup
+    public void setUp() {
+        StringBuilder utterance = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                utterance.append(' ');
+            }
+            utterance.append(BenchmarkText.word(i));
+            ArrayList<String> matches = new ArrayList<>();
+            for (int a = 0; a < alternatives; a++) {
+                matches.add(a == 0 ? utterance.toString() : utterance + " " + BenchmarkText.word(i + a));
+            }
+            partials.add(matches);
+            unstableTexts.add(BenchmarkText.word(i + 1));
+        }
+        // The recognizer repeats its last hypothesis a few times before the final result.
+        for (int i = 0; i < 3; i++) {
+            partials.add(partials.get(partials.size() - 1));
+            unstableTexts.add(null);
+        }
+    }
+
+    @Benchmark
+    public void utterance(Blackhole blackhole) throws Exception {
+        hypotheses.clear();
+        transcript.clear();
+        encoder.reset();
+        boolean delta = "delta".equals(mode);
+
+        for (int i = 0; i < partials.size(); i++) {
+            ArrayList<String> matches = UnstableTextMerger.merge(partials.get(i), unstableTexts.get(i));
+            if (!hypotheses.update(matches)) {
+                continue;
+            }
+            transcript.setTail(hypotheses.top());
+            PartialResultEvent event = delta
+                ? PartialResultEvent.delta(matches, transcript, encoder)
+                : PartialResultEvent.full(matches, transcript);
+            blackhole.consume(event);
+        }
+    }
+
+    @Benchmark
+    public void baseline(Blackhole blackhole) throws Exception {
+        JSONArray previous = new JSONArray();
+        baselineAccumulated.setLength(0);
+
+        for (int i = 0; i < partials.size(); i++) {
+            ArrayList<String> matches = UnstableTextMerger.merge(partials.get(i), unstableTexts.get(i));
+            JSONArray matchesJson = new JSONArray(matches);
+            JSONArray next = new JSONArray(matches);
+            if (previous.toString().equals(next.toString())) {
+                continue;
+            }
+            previous = next;
+            JSONObject payload = new JSONObject();
+            payload.put("matches", matchesJson);
+            if (baselineAccumulated.length() > 0) {
+                payload.put("accumulated", baselineAccumulated.toString().trim());
+            }
+            blackhole.consume(payload);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package app.capgo.speechrecognition;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Converts 60 seconds of WAVE audio to 16 kHz mono through the same fixed-size direct buffers the file
+ * transcription pump uses. Divide 60 s by the score for the real-time factor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PcmConverterBenchmark {
+
+    private static final int SECONDS = 60;
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * {@code sampleRate/channels/bitsPerSample}.
+     */
+    @Param({ "16000/1/16", "44100/2/16", "48000/2/24", "48000/1/32f" })
+    public String format;
+
+    private WavHeader header;
+    private ByteBuffer data;
+    private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] parts = format.split("/");
+        int sampleRate = Integer.parseInt(parts[0]);
+        int channels = Integer.parseInt(parts[1]);
+        boolean floating = parts[2].endsWith("f");
+        int bits = Integer.parseInt(floating ? parts[2].substring(0, parts[2].length() - 1) : parts[2]);
+        int frameSize = channels * bits / 8;
+        int frames = sampleRate * SECONDS;
+
+        ByteBuffer wav = ByteBuffer.allocate(44 + frames * frameSize).order(ByteOrder.LITTLE_ENDIAN);
+        wav.put(new byte[] { 'R', 'I', 'F', 'F' }).putInt(36 + frames * frameSize).put(new byte[] { 'W', 'A', 'V', 'E' });
+        wav.put(new byte[] { 'f', 'm', 't', ' ' }).putInt(16);
+        wav.putShort((short) (floating ? WavHeader.FORMAT_IEEE_FLOAT : WavHeader.FORMAT_PCM)).putShort((short) channels);
+        wav.putInt(sampleRate).putInt(sampleRate * frameSize).putShort((short) frameSize).putShort((short) bits);
+        wav.put(new byte[] { 'd', 'a', 't', 'a' }).putInt(frames * frameSize);
+        for (int f = 0; f < frames; f++) {
+            // A speech-band chirp so the filter works on non-trivial input.
+            double value = 0.5 * Math.sin(2 * Math.PI * (200 + (f % sampleRate) * 3000.0 / sampleRate) * f / sampleRate);
+            for (int c = 0; c < channels; c++) {
+                if (floating) {
+                    wav.putFloat((float) value);
+                } else if (bits == 16) {
+                    wav.putShort((short) (value * Short.MAX_VALUE));
+                } else {
+                    int sample = (int) (value * 8388607);
+                    wav.put((byte) sample).put((byte) (sample >> 8)).put((byte) (sample >> 16));
+                }
+            }
+        }
+
+        header = WavHeader.read(new ByteArrayInputStream(wav.array()));
+        data = ByteBuffer.wrap(wav.array(), 44, frames * frameSize).slice();
+    }
+
+    @Benchmark
+    public long convert(Blackhole blackhole) {
+        PcmConverter converter = new PcmConverter(header, PcmConverter.TARGET_SAMPLE_RATE);
+        ByteBuffer source = data.duplicate();
+        long written = 0;
+        in.clear();
+        while (source.hasRemaining()) {
+            int count = Math.min(in.remaining(), source.remaining());
+            ByteBuffer slice = source.slice();
+            slice.limit(count);
+            in.put(slice);
+            source.position(source.position() + count);
+            in.flip();
+            do {
+                converter.convert(in, out);
+                written += drain(blackhole);
+            } while (in.remaining() >= converter.inputBytesPerFrame());
+            in.compact();
+        }
+        boolean drained;
+        do {
+            drained = converter.finish(out);
+            written += drain(blackhole);
+        } while (!drained);
+        return written;
+    }
+
+    private int drain(Blackhole blackhole) {
+        out.flip();
+        int count = out.remaining();
+        if (count > 0) {
+            blackhole.consume(out.getShort(0));
+        }
+        out.clear();
+        return count;
+    }
+}
@@ -0,0 +1,58 @@
+package app.capgo.speechrecognition;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Builds a long continuous-PTT transcript: every segment goes through a few tail updates with a
+ * {@code currentText()} read each, then gets appended.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TranscriptBenchmark {
+
+    private static final int WORDS_PER_SEGMENT = 12;
+    private static final int TAIL_UPDATES_PER_SEGMENT = 4;
+
+    @Param({ "100", "1000", "10000" })
+    public int segments;
+
+    private String[] segmentTexts;
+    private String[][] tails;
+    private final TranscriptBuffer transcript = new TranscriptBuffer();
+
+    @Setup
+    public void setUp() {
+        segmentTexts = new String[segments];
+        tails = new String[segments][TAIL_UPDATES_PER_SEGMENT];
+        for (int s = 0; s < segments; s++) {
+            segmentTexts[s] = BenchmarkText.segment(s, WORDS_PER_SEGMENT);
+            for (int t = 0; t < TAIL_UPDATES_PER_SEGMENT; t++) {
+                tails[s][t] = BenchmarkText.segment(s, (t + 1) * WORDS_PER_SEGMENT / TAIL_UPDATES_PER_SEGMENT);
+            }
+        }
+    }
+
+    @Benchmark
+    public int accumulate(Blackhole blackhole) {
+        transcript.clear();
+        for (int s = 0; s < segments; s++) {
+            for (int t = 0; t < TAIL_UPDATES_PER_SEGMENT; t++) {
+                transcript.setTail(tails[s][t]);
+                blackhole.consume(transcript.currentText());
+            }
+            transcript.append(segmentTexts[s]);
+            transcript.setTail(null);
+        }
+        return transcript.length();
+    }
+}
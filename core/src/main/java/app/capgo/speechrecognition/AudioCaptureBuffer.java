@@ -0,0 +1,161 @@
+package app.capgo.speechrecognition;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Fixed-size ring of the audio the recognizer hands to {@code onBufferReceived}, or of the plugin's
+ * own microphone capture, kept in a direct buffer so it stays off the Java heap.
+ *
+ * The ring is allocated once per capacity and reused across sessions, so recording a callback does
+ * not allocate. Audio is assumed to be 16-bit mono PCM at {@link #SAMPLE_RATE}, the format the
+ * platform recognizers deliver and the plugin records in.
+ */
+class AudioCaptureBuffer {
+
+    static final int SAMPLE_RATE = 16000;
+    static final int CHANNELS = 1;
+    static final int BYTES_PER_SAMPLE = 2;
+    static final int BYTES_PER_SECOND = SAMPLE_RATE * CHANNELS * BYTES_PER_SAMPLE;
+    private static final int WAV_HEADER_SIZE = 44;
+
+    private ByteBuffer ring;
+    private boolean enabled = false;
+    private long totalWritten = 0;
+
+    /**
+     * Enables capture with room for {@code seconds} of audio, or disables it when {@code seconds <= 0}.
+     * The history is cleared either way.
+     */
+    synchronized void configure(int seconds) {
+        enabled = seconds > 0;
+        totalWritten = 0;
+        if (!enabled) {
+            return;
+        }
+        int capacity = seconds * BYTES_PER_SECOND;
+        if (ring == null || ring.capacity() != capacity) {
+            ring = ByteBuffer.allocateDirect(capacity);
+        }
+        ring.clear();
+    }
+
+    synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    void write(byte[] data) {
+        if (data != null) {
+            write(data, 0, data.length);
+        }
+    }
+
+    synchronized void write(byte[] data, int start, int count) {
+        if (!enabled || count <= 0) {
+            return;
+        }
+
+        int capacity = ring.capacity();
+        int offset = start;
+        int length = count;
+        if (length > capacity) {
+            offset = start + length - capacity;
+            length = capacity;
+        }
+
+        // With more than a ring's worth, only the newest bytes are kept; they still end where the
+        // whole write would have.
+        int position = (int) ((totalWritten + count - length) % capacity);
+        int firstChunk = Math.min(length, capacity - position);
+        ring.position(position);
+        ring.put(data, offset, firstChunk);
+        if (firstChunk < length) {
+            ring.position(0);
+            ring.put(data, offset + firstChunk, length - firstChunk);
+        }
+        totalWritten += count;
+    }
+
+    /**
+     * Length in milliseconds of the audio currently held by the ring.
+     */
+    synchronized long getBufferedDurationMs() {
+        if (!enabled) {
+            return 0;
+        }
+        return (Math.min(totalWritten, ring.capacity()) * 1000L) / BYTES_PER_SECOND;
+    }
+
+    /**
+     * Writes the last {@code seconds} of audio (or everything held when {@code seconds <= 0}) to a
+     * WAV file.
+     *
+     * The audio is copied out of the ring under the lock and the file is written without it, so
+     * recording callbacks are not held up by file I/O.
+     *
+     * @return number of PCM bytes written
+     */
+    int writeWav(File file, int seconds) throws IOException {
+        ByteBuffer audio = snapshot(seconds);
+        try (FileOutputStream output = new FileOutputStream(file); FileChannel channel = output.getChannel()) {
+            writeWavHeader(channel, audio.remaining());
+            writeFully(channel, audio);
+        }
+        return audio.limit();
+    }
+
+    private synchronized ByteBuffer snapshot(int seconds) {
+        int available = enabled ? (int) Math.min(totalWritten, ring.capacity()) : 0;
+        int length = seconds > 0 ? Math.min(available, seconds * BYTES_PER_SECOND) : available;
+        length -= length % (BYTES_PER_SAMPLE * CHANNELS);
+
+        ByteBuffer copy = ByteBuffer.allocate(length);
+        if (length == 0) {
+            return copy;
+        }
+        int capacity = ring.capacity();
+        int end = (int) (totalWritten % capacity);
+        int start = (end - length + capacity) % capacity;
+        ByteBuffer view = ring.duplicate();
+        if (start < end || end == 0) {
+            view.limit(start + length).position(start);
+            copy.put(view);
+        } else {
+            view.limit(capacity).position(start);
+            copy.put(view);
+            view.limit(end).position(0);
+            copy.put(view);
+        }
+        copy.flip();
+        return copy;
+    }
+
+    private static void writeWavHeader(FileChannel channel, int dataLength) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(WAV_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[] { 'R', 'I', 'F', 'F' });
+        header.putInt(36 + dataLength);
+        header.put(new byte[] { 'W', 'A', 'V', 'E' });
+        header.put(new byte[] { 'f', 'm', 't', ' ' });
+        header.putInt(16);
+        header.putShort((short) 1);
+        header.putShort((short) CHANNELS);
+        header.putInt(SAMPLE_RATE);
+        header.putInt(BYTES_PER_SECOND);
+        header.putShort((short) (CHANNELS * BYTES_PER_SAMPLE));
+        header.putShort((short) (BYTES_PER_SAMPLE * 8));
+        header.put(new byte[] { 'd', 'a', 't', 'a' });
+        header.putInt(dataLength);
+        header.flip();
+        writeFully(channel, header);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
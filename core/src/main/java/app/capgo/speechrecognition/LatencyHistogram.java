@@ -0,0 +1,102 @@
+package app.capgo.speechrecognition;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-memory latency histogram with logarithmic buckets, in the style of HdrHistogram.
+ *
+ * Values are recorded in microseconds. Every power of two is split into {@link #SUB_BUCKETS} linear
+ * sub-buckets, which bounds the relative error of a reported percentile to about 6%. All counts live
+ * in one preallocated {@code long[]}, so {@link #record} never allocates.
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // 2^40 us is about 12 days; anything longer is clamped into the last bucket.
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount = 0;
+    private long sum = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+
+    synchronized void record(long valueMicros) {
+        long value = Math.min(Math.max(0, valueMicros), MAX_VALUE);
+        counts[indexOf(value)]++;
+        totalCount++;
+        sum += value;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    synchronized void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    synchronized long getCount() {
+        return totalCount;
+    }
+
+    synchronized long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    synchronized long getMax() {
+        return max;
+    }
+
+    synchronized double getMean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    /**
+     * Returns the highest value equivalent to the given percentile ({@code 0..100}), capped at the
+     * largest recorded value.
+     */
+    synchronized long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double clamped = Math.min(100, Math.max(0, percentile));
+        long target = Math.max(1, (long) Math.ceil((clamped / 100) * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,89 @@
+package app.capgo.speechrecognition;
+
+import java.util.List;
+
+/**
+ * Holds the last hypotheses reported by the recognizer as plain strings with their hashes, so a
+ * repeated {@code onPartialResults} callback can be recognized without serializing anything.
+ *
+ * Not thread-safe: every call is made while holding the plugin lock.
+ */
+class PartialHypotheses {
+
+    private static final int INITIAL_CAPACITY = 5;
+
+    private String[] hypotheses = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int count = 0;
+
+    /**
+     * Replaces the stored hypotheses with {@code matches}.
+     *
+     * @return {@code true} when the hypotheses changed. Does not allocate when they did not.
+     */
+    boolean update(List<String> matches) {
+        int size = matches.size();
+        if (size == count) {
+            boolean changed = false;
+            for (int i = 0; i < size; i++) {
+                if (!matchesAt(i, matches.get(i))) {
+                    changed = true;
+                    break;
+                }
+            }
+            if (!changed) {
+                return false;
+            }
+        }
+
+        if (size > hypotheses.length) {
+            hypotheses = new String[size];
+            hashes = new int[size];
+        }
+        for (int i = 0; i < size; i++) {
+            String hypothesis = matches.get(i);
+            hypotheses[i] = hypothesis;
+            hashes[i] = hypothesis == null ? 0 : hypothesis.hashCode();
+        }
+        for (int i = size; i < count; i++) {
+            hypotheses[i] = null;
+        }
+        count = size;
+        return true;
+    }
+
+    void clear() {
+        for (int i = 0; i < count; i++) {
+            hypotheses[i] = null;
+        }
+        count = 0;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    int size() {
+        return count;
+    }
+
+    String get(int index) {
+        String hypothesis = hypotheses[index];
+        return hypothesis == null ? "" : hypothesis;
+    }
+
+    /**
+     * Returns the top hypothesis, or an empty string when there is none.
+     */
+    String top() {
+        return count == 0 ? "" : get(0);
+    }
+
+    private boolean matchesAt(int index, String candidate) {
+        String current = hypotheses[index];
+        if (current == null || candidate == null) {
+            return current == candidate;
+        }
+        return hashes[index] == candidate.hashCode() && current.equals(candidate);
+    }
+}
@@ -0,0 +1,112 @@
+package app.capgo.speechrecognition;
+
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Values of one {@code partialResults} event, captured while the plugin lock is held and written
+ * into a JSON payload later on the event thread.
+ */
+final class PartialResultEvent {
+
+    private final boolean delta;
+    private final boolean restarting;
+    private final List<String> matches;
+    private final String accumulated;
+    private final long seq;
+    private final String hypothesis;
+    private final int matchPrefixLength;
+    private final int accumulatedOffset;
+    private final String accumulatedSuffix;
+
+    private PartialResultEvent(
+        boolean delta,
+        boolean restarting,
+        List<String> matches,
+        String accumulated,
+        long seq,
+        String hypothesis,
+        int matchPrefixLength,
+        int accumulatedOffset,
+        String accumulatedSuffix
+    ) {
+        this.delta = delta;
+        this.restarting = restarting;
+        this.matches = matches;
+        this.accumulated = accumulated;
+        this.seq = seq;
+        this.hypothesis = hypothesis;
+        this.matchPrefixLength = matchPrefixLength;
+        this.accumulatedOffset = accumulatedOffset;
+        this.accumulatedSuffix = accumulatedSuffix;
+    }
+
+    /**
+     * Captures an event carrying the full match list and, when there is one, the accumulated
+     * transcript.
+     */
+    static PartialResultEvent full(List<String> matches, TranscriptBuffer transcript) {
+        String accumulated = transcript.isEmpty() ? null : transcript.text();
+        return new PartialResultEvent(false, false, matches, accumulated, 0, null, 0, -1, null);
+    }
+
+    /**
+     * Captures an event carrying only what changed since the previous one and advances
+     * {@code encoder} accordingly.
+     */
+    static PartialResultEvent delta(List<String> matches, TranscriptBuffer transcript, PartialResultsDeltaEncoder encoder) {
+        String hypothesis = matches.get(0) != null ? matches.get(0) : "";
+        int prefixLength = encoder.advanceHypothesis(hypothesis);
+        long seq = encoder.nextSequence();
+        int accumulatedOffset = encoder.advanceAccumulated(transcript.length(), transcript.getDroppedLength());
+        String accumulatedSuffix = accumulatedSuffix(transcript, encoder, accumulatedOffset);
+        return new PartialResultEvent(true, false, null, null, seq, hypothesis, prefixLength, accumulatedOffset, accumulatedSuffix);
+    }
+
+    /**
+     * Captures the {@code isRestarting} event sent when a continuous session folds its final result
+     * into the transcript. It always carries the full match list; with an {@code encoder} the
+     * transcript is sent as a delta and the encoder advanced, otherwise in full.
+     */
+    static PartialResultEvent restart(List<String> matches, TranscriptBuffer transcript, PartialResultsDeltaEncoder encoder) {
+        if (encoder == null) {
+            return new PartialResultEvent(false, true, matches, transcript.text(), 0, null, 0, -1, null);
+        }
+        long seq = encoder.nextSequence();
+        int accumulatedOffset = encoder.advanceAccumulated(transcript.length(), transcript.getDroppedLength());
+        String accumulatedSuffix = accumulatedSuffix(transcript, encoder, accumulatedOffset);
+        return new PartialResultEvent(true, true, matches, null, seq, null, 0, accumulatedOffset, accumulatedSuffix);
+    }
+
+    private static String accumulatedSuffix(TranscriptBuffer transcript, PartialResultsDeltaEncoder encoder, int accumulatedOffset) {
+        return accumulatedOffset >= 0 ? transcript.textFrom(encoder.getAccumulatedBase() + accumulatedOffset) : null;
+    }
+
+    /**
+     * Writes the event fields into {@code payload} and returns it.
+     */
+    <T extends JSONObject> T writeTo(T payload) throws JSONException {
+        if (matches != null) {
+            payload.put("matches", new JSONArray(matches));
+        }
+        if (delta) {
+            payload.put("seq", seq);
+            if (hypothesis != null) {
+                payload.put("matchPrefixLength", matchPrefixLength);
+                payload.put("matchSuffix", hypothesis.substring(matchPrefixLength));
+            }
+            if (accumulatedSuffix != null) {
+                payload.put("accumulatedOffset", accumulatedOffset);
+                payload.put("accumulatedSuffix", accumulatedSuffix);
+            }
+        } else if (accumulated != null) {
+            payload.put("accumulated", accumulated);
+        }
+        if (restarting) {
+            payload.put("isRestarting", true);
+        }
+        return payload;
+    }
+}
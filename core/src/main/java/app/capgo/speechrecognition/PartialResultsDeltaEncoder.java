@@ -0,0 +1,109 @@
+package app.capgo.speechrecognition;
+
+/**
+ * Remembers what was last sent to JS so {@code partialResults} events can carry only what changed.
+ *
+ * The top hypothesis is sent as a common prefix length plus the replaced suffix, and the accumulated
+ * transcript as an offset plus the text appended since the previous event. Offsets sent to JS count
+ * from {@link #getAccumulatedBase()}, the transcript offset of the first character JS holds; it moves
+ * forward when segments JS never received were dropped from memory and the transcript is resent.
+ */
+class PartialResultsDeltaEncoder {
+
+    private long sequence = 0;
+    private String sentHypothesis = "";
+    private int sentAccumulatedLength = 0;
+    private int accumulatedBase = 0;
+
+    void reset() {
+        sequence = 0;
+        sentHypothesis = "";
+        sentAccumulatedLength = 0;
+        accumulatedBase = 0;
+    }
+
+    /**
+     * Starts the next hypothesis from scratch, e.g. when the recognizer begins a new utterance.
+     */
+    void resetHypothesis() {
+        sentHypothesis = "";
+    }
+
+    /**
+     * Starts the accumulated transcript from scratch, e.g. when a new PTT hold clears it.
+     */
+    void resetAccumulated() {
+        sentAccumulatedLength = 0;
+        accumulatedBase = 0;
+    }
+
+    long nextSequence() {
+        return ++sequence;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns how many leading characters {@code hypothesis} shares with the last sent hypothesis
+     * and records it as sent.
+     */
+    int advanceHypothesis(String hypothesis) {
+        int prefixLength = commonPrefixLength(sentHypothesis, hypothesis);
+        sentHypothesis = hypothesis;
+        return prefixLength;
+    }
+
+    /**
+     * Returns the offset, relative to {@link #getAccumulatedBase()}, from which JS should replace the
+     * accumulated transcript, or {@code -1} when the transcript did not change since the last event, and
+     * records {@code accumulatedLength} as sent.
+     *
+     * Both lengths are measured like {@link TranscriptBuffer#length()}. When the transcript was cleared,
+     * or text JS has not received yet was already dropped from memory ({@code droppedLength}), the
+     * result is {@code 0} and the base moves to {@code droppedLength}: JS then replaces its whole copy
+     * with the text still in memory.
+     */
+    int advanceAccumulated(int accumulatedLength, int droppedLength) {
+        if (accumulatedLength == sentAccumulatedLength) {
+            return -1;
+        }
+        int offset;
+        if (accumulatedLength < sentAccumulatedLength || sentAccumulatedLength < droppedLength) {
+            accumulatedBase = droppedLength;
+            offset = 0;
+        } else {
+            offset = sentAccumulatedLength - accumulatedBase;
+        }
+        sentAccumulatedLength = accumulatedLength;
+        return offset;
+    }
+
+    /**
+     * Records that JS replaced its copy of the accumulated transcript with a snapshot of the text still
+     * held in memory, i.e. everything from {@code droppedLength} up to {@code accumulatedLength}, so
+     * later offsets count from the start of that snapshot.
+     */
+    void resyncAccumulated(int accumulatedLength, int droppedLength) {
+        accumulatedBase = droppedLength;
+        sentAccumulatedLength = accumulatedLength;
+    }
+
+    /**
+     * Transcript offset, measured like {@link TranscriptBuffer#length()}, of the first character of
+     * JS's copy of the accumulated transcript.
+     */
+    int getAccumulatedBase() {
+        return accumulatedBase;
+    }
+
+    static int commonPrefixLength(String previous, String next) {
+        int max = Math.min(previous.length(), next.length());
+        int i = 0;
+        while (i < max && previous.charAt(i) == next.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+}
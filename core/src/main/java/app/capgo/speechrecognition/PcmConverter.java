@@ -0,0 +1,267 @@
+package app.capgo.speechrecognition;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming conversion of WAVE sample data to 16-bit little-endian mono PCM at a target rate, the
+ * format recognizers take through {@code EXTRA_AUDIO_SOURCE}.
+ *
+ * Input frames are decoded (8-bit unsigned, 16/24/32-bit signed or 32-bit float), downmixed by
+ * averaging the channels and, when the rates differ, resampled with a windowed-sinc filter whose
+ * cutoff follows the lower of the two Nyquist frequencies. All state lives in arrays sized up front,
+ * so a converter handles files of any length in constant memory; callers feed it from a fixed-size
+ * buffer with {@link #convert} and drain the filter with {@link #finish} at the end of the data.
+ *
+ * Not thread-safe; use one converter per stream.
+ */
+final class PcmConverter {
+
+    static final int TARGET_SAMPLE_RATE = 16000;
+
+    private static final int BLOCK_FRAMES = 2048;
+    private static final int ZERO_CROSSINGS = 8;
+    private static final int PHASES = 256;
+    private static final double CUTOFF = 0.92;
+    private static final double KAISER_BETA = 8.0;
+
+    private final int audioFormat;
+    private final int channels;
+    private final int bytesPerSample;
+    private final int bytesPerFrame;
+    private final int inputRate;
+    private final int outputRate;
+    private final boolean resample;
+
+    // Resampler state; the array keeps halfTaps - 1 samples of history in front of position.
+    private final int halfTaps;
+    private final float[] filter;
+    private final int step;
+    private final int stepRemainder;
+    private final float[] samples;
+    private int sampleCount;
+    private int position;
+    private int remainder = 0;
+
+    private long framesIn = 0;
+    private long framesOut = 0;
+    private boolean flushed = false;
+
+    /**
+     * @throws IllegalArgumentException when {@link #isSupported} is {@code false} for {@code source}
+     */
+    PcmConverter(WavHeader source, int outputRate) {
+        if (!isSupported(source) || outputRate <= 0) {
+            throw new IllegalArgumentException("Unsupported WAVE encoding.");
+        }
+        this.audioFormat = source.audioFormat;
+        this.channels = source.channels;
+        this.bytesPerSample = source.bitsPerSample / 8;
+        this.bytesPerFrame = source.bytesPerFrame();
+        this.inputRate = source.sampleRate;
+        this.outputRate = outputRate;
+        this.resample = inputRate != outputRate;
+
+        if (resample) {
+            double scale = Math.min(1.0, (double) outputRate / inputRate);
+            halfTaps = (int) Math.ceil(ZERO_CROSSINGS / scale);
+            filter = buildFilter(halfTaps, scale * CUTOFF);
+            step = inputRate / outputRate;
+            stepRemainder = inputRate % outputRate;
+        } else {
+            halfTaps = 1;
+            filter = null;
+            step = 1;
+            stepRemainder = 0;
+        }
+        samples = new float[BLOCK_FRAMES + 2 * halfTaps];
+        // Zero history so the first output sample lines up with the first input sample.
+        sampleCount = halfTaps - 1;
+        position = halfTaps - 1;
+    }
+
+    static boolean isSupported(WavHeader header) {
+        if (header.channels <= 0 || header.sampleRate <= 0) {
+            return false;
+        }
+        if (header.audioFormat == WavHeader.FORMAT_IEEE_FLOAT) {
+            return header.bitsPerSample == 32;
+        }
+        return header.audioFormat == WavHeader.FORMAT_PCM && (header.bitsPerSample == 8 || header.bitsPerSample == 16 || header.bitsPerSample == 24 || header.bitsPerSample == 32);
+    }
+
+    int inputBytesPerFrame() {
+        return bytesPerFrame;
+    }
+
+    /**
+     * Converts whole frames from {@code input} into {@code output} until {@code input} has less than a
+     * frame left or {@code output} is full. Both buffers are advanced; a trailing partial frame stays in
+     * {@code input} for the next call, and output that did not fit is kept and written first next time.
+     */
+    void convert(ByteBuffer input, ByteBuffer output) {
+        input.order(ByteOrder.LITTLE_ENDIAN);
+        output.order(ByteOrder.LITTLE_ENDIAN);
+        while (true) {
+            emit(output, false);
+            if (output.remaining() < 2 || input.remaining() < bytesPerFrame) {
+                return;
+            }
+            compact();
+            int frames = Math.min(input.remaining() / bytesPerFrame, samples.length - sampleCount);
+            if (frames == 0) {
+                return;
+            }
+            decode(input, frames);
+        }
+    }
+
+    /**
+     * Writes the output still held back by the filter at the end of the data. Returns {@code false}
+     * when {@code output} filled up first and {@code finish} has to be called again.
+     */
+    boolean finish(ByteBuffer output) {
+        output.order(ByteOrder.LITTLE_ENDIAN);
+        if (!flushed) {
+            emit(output, false);
+            if (output.remaining() < 2) {
+                return false;
+            }
+            compact();
+            // Enough zeros for the filter to reach past the last input sample.
+            for (int i = 0; i < halfTaps; i++) {
+                samples[sampleCount++] = 0;
+            }
+            flushed = true;
+        }
+        emit(output, true);
+        return framesOut >= expectedFrames();
+    }
+
+    private long expectedFrames() {
+        return (framesIn * outputRate + inputRate - 1) / inputRate;
+    }
+
+    private void decode(ByteBuffer input, int frames) {
+        float scale = 1.0f / channels;
+        for (int f = 0; f < frames; f++) {
+            float sum = 0;
+            for (int c = 0; c < channels; c++) {
+                sum += readSample(input);
+            }
+            samples[sampleCount++] = sum * scale;
+        }
+        framesIn += frames;
+    }
+
+    /**
+     * Reads one sample, scaled to the 16-bit range.
+     */
+    private float readSample(ByteBuffer input) {
+        switch (bytesPerSample) {
+            case 1:
+                return ((input.get() & 0xFF) - 128) * 256f;
+            case 2:
+                return input.getShort();
+            case 3:
+                int low = input.get() & 0xFF;
+                int mid = input.get() & 0xFF;
+                int high = input.get();
+                return ((high << 16) | (mid << 8) | low) / 256f;
+            default:
+                if (audioFormat == WavHeader.FORMAT_IEEE_FLOAT) {
+                    return input.getFloat() * 32768f;
+                }
+                return input.getInt() / 65536f;
+        }
+    }
+
+    private void emit(ByteBuffer output, boolean draining) {
+        int taps = 2 * halfTaps;
+        long limit = draining ? expectedFrames() : Long.MAX_VALUE;
+        while (output.remaining() >= 2 && position + halfTaps < sampleCount + (resample ? 0 : 1) && framesOut < limit) {
+            float value;
+            if (resample) {
+                int phase = (int) ((long) remainder * PHASES / outputRate);
+                int base = phase * taps;
+                int first = position - halfTaps + 1;
+                float sum = 0;
+                for (int t = 0; t < taps; t++) {
+                    sum += samples[first + t] * filter[base + t];
+                }
+                value = sum;
+                position += step;
+                remainder += stepRemainder;
+                if (remainder >= outputRate) {
+                    remainder -= outputRate;
+                    position++;
+                }
+            } else {
+                value = samples[position++];
+            }
+            output.putShort(toShort(value));
+            framesOut++;
+        }
+    }
+
+    /**
+     * Drops samples the filter no longer needs, keeping the history in front of {@link #position}.
+     */
+    private void compact() {
+        int drop = Math.min(position - halfTaps + 1, sampleCount);
+        if (drop <= 0) {
+            return;
+        }
+        System.arraycopy(samples, drop, samples, 0, sampleCount - drop);
+        sampleCount -= drop;
+        position -= drop;
+    }
+
+    private static short toShort(float value) {
+        int rounded = Math.round(value);
+        if (rounded > Short.MAX_VALUE) {
+            return Short.MAX_VALUE;
+        }
+        if (rounded < Short.MIN_VALUE) {
+            return Short.MIN_VALUE;
+        }
+        return (short) rounded;
+    }
+
+    /**
+     * Kaiser-windowed sinc low-pass with {@code cutoff} relative to the input Nyquist frequency,
+     * tabulated for {@link #PHASES} fractional delays. Each phase is normalized to unity gain.
+     */
+    private static float[] buildFilter(int halfTaps, double cutoff) {
+        int taps = 2 * halfTaps;
+        float[] table = new float[PHASES * taps];
+        double windowNorm = besselI0(KAISER_BETA);
+        for (int p = 0; p < PHASES; p++) {
+            double fraction = (double) p / PHASES;
+            double sum = 0;
+            for (int t = 0; t < taps; t++) {
+                double x = (t - halfTaps + 1) - fraction;
+                double ratio = x / halfTaps;
+                double window = Math.abs(ratio) >= 1 ? 0 : besselI0(KAISER_BETA * Math.sqrt(1 - ratio * ratio)) / windowNorm;
+                double sinc = x == 0 ? 1 : Math.sin(Math.PI * cutoff * x) / (Math.PI * cutoff * x);
+                double value = cutoff * sinc * window;
+                table[p * taps + t] = (float) value;
+                sum += value;
+            }
+            for (int t = 0; t < taps; t++) {
+                table[p * taps + t] /= (float) sum;
+            }
+        }
+        return table;
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        for (int k = 1; k < 32; k++) {
+            term *= (x / (2 * k)) * (x / (2 * k));
+            sum += term;
+        }
+        return sum;
+    }
+}
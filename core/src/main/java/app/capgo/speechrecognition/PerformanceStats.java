@@ -0,0 +1,49 @@
+package app.capgo.speechrecognition;
+
+/**
+ * Cross-session latency histograms, one per {@link Metric}, kept for the lifetime of the plugin.
+ *
+ * Recording is allocation-free, so the stats stay enabled in production builds.
+ */
+class PerformanceStats {
+
+    enum Metric {
+        TIME_TO_READY("timeToReady"),
+        TIME_TO_FIRST_PARTIAL("timeToFirstPartial"),
+        STOP_TO_FINAL("stopToFinal"),
+        RESTART_GAP("restartGap"),
+        GAPLESS_RESTART_GAP("gaplessRestartGap"),
+        RECOGNIZER_CREATE("recognizerCreate");
+
+        final String key;
+
+        Metric(String key) {
+            this.key = key;
+        }
+    }
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Metric.values().length];
+
+    PerformanceStats() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records a duration measured with {@code SystemClock.elapsedRealtimeNanos()}.
+     */
+    void recordNanos(Metric metric, long durationNanos) {
+        histograms[metric.ordinal()].record(durationNanos / 1000);
+    }
+
+    LatencyHistogram get(Metric metric) {
+        return histograms[metric.ordinal()];
+    }
+
+    void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package app.capgo.speechrecognition;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Listening lifecycle of the plugin, published as immutable snapshots.
+ *
+ * Reads never block, so recognizer callbacks can check staleness and {@code isListening} can answer
+ * without taking the plugin lock. Every state change goes through {@link #moveTo}, which rejects
+ * transitions that are not listed in the transition table.
+ */
+class SessionStateMachine {
+
+    enum ListeningState {
+        IDLE,
+        STARTING,
+        STARTED,
+        STOPPING
+    }
+
+    static final class Snapshot {
+
+        final ListeningState state;
+        final long sessionId;
+        final long generation;
+        final boolean listening;
+
+        Snapshot(ListeningState state, long sessionId, long generation, boolean listening) {
+            this.state = state;
+            this.sessionId = sessionId;
+            this.generation = generation;
+            this.listening = listening;
+        }
+    }
+
+    private static final Map<ListeningState, EnumSet<ListeningState>> TRANSITIONS = new EnumMap<>(ListeningState.class);
+
+    static {
+        TRANSITIONS.put(ListeningState.IDLE, EnumSet.of(ListeningState.STARTING));
+        TRANSITIONS.put(ListeningState.STARTING, EnumSet.of(ListeningState.STARTED, ListeningState.STOPPING));
+        // STARTED -> STARTED happens when continuous PTT restarts the recognizer inside one session.
+        TRANSITIONS.put(ListeningState.STARTED, EnumSet.of(ListeningState.STARTED, ListeningState.STOPPING));
+        TRANSITIONS.put(ListeningState.STOPPING, EnumSet.of(ListeningState.IDLE));
+    }
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(new Snapshot(ListeningState.IDLE, 0, 0, false));
+
+    Snapshot snapshot() {
+        return current.get();
+    }
+
+    boolean isCurrentSession(long sessionId) {
+        return current.get().sessionId == sessionId;
+    }
+
+    boolean isCurrent(long sessionId, long generation) {
+        Snapshot snapshot = current.get();
+        return snapshot.sessionId == sessionId && snapshot.generation == generation;
+    }
+
+    /**
+     * Starts a new session when idle.
+     *
+     * @return the snapshot of the new session, or {@code null} when a session is already running
+     */
+    Snapshot begin() {
+        while (true) {
+            Snapshot snapshot = current.get();
+            if (!isAllowed(snapshot.state, ListeningState.STARTING)) {
+                return null;
+            }
+            Snapshot next = new Snapshot(ListeningState.STARTING, snapshot.sessionId + 1, snapshot.generation, false);
+            if (current.compareAndSet(snapshot, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Moves the given session to {@code state}.
+     *
+     * @return {@code false} when the session is no longer current or the transition is not allowed
+     */
+    boolean moveTo(long sessionId, ListeningState state) {
+        while (true) {
+            Snapshot snapshot = current.get();
+            if (snapshot.sessionId != sessionId || !isAllowed(snapshot.state, state)) {
+                return false;
+            }
+            boolean listening = state == ListeningState.STARTED || (state == ListeningState.STOPPING && snapshot.listening);
+            Snapshot next = new Snapshot(state, sessionId, snapshot.generation, listening);
+            if (current.compareAndSet(snapshot, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Updates the listening flag of the given session without changing its state.
+     */
+    boolean setListening(long sessionId, boolean listening) {
+        while (true) {
+            Snapshot snapshot = current.get();
+            if (snapshot.sessionId != sessionId) {
+                return false;
+            }
+            if (snapshot.listening == listening) {
+                return true;
+            }
+            Snapshot next = new Snapshot(snapshot.state, sessionId, snapshot.generation, listening);
+            if (current.compareAndSet(snapshot, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Invalidates every recognizer listener created so far.
+     *
+     * @return the new recognizer generation
+     */
+    long nextGeneration() {
+        while (true) {
+            Snapshot snapshot = current.get();
+            Snapshot next = new Snapshot(snapshot.state, snapshot.sessionId, snapshot.generation + 1, snapshot.listening);
+            if (current.compareAndSet(snapshot, next)) {
+                return next.generation;
+            }
+        }
+    }
+
+    /**
+     * Forces the machine back to idle, e.g. when the plugin is destroyed mid-session.
+     */
+    void reset() {
+        while (true) {
+            Snapshot snapshot = current.get();
+            Snapshot next = new Snapshot(ListeningState.IDLE, snapshot.sessionId, snapshot.generation + 1, false);
+            if (current.compareAndSet(snapshot, next)) {
+                return;
+            }
+        }
+    }
+
+    private static boolean isAllowed(ListeningState from, ListeningState to) {
+        return TRANSITIONS.get(from).contains(to);
+    }
+}
@@ -0,0 +1,107 @@
+package app.capgo.speechrecognition;
+
+import java.util.Arrays;
+
+/**
+ * Monotonic timestamps of the milestones of recent sessions, used to see where start and stop
+ * latency goes.
+ *
+ * The last few sessions are kept in preallocated slots, so marking a milestone does not allocate.
+ * Each milestone keeps its first occurrence in a session; later occurrences, e.g. from continuous
+ * PTT restarts, are ignored.
+ */
+class SessionTimeline {
+
+    enum Mark {
+        START("start"),
+        RECOGNIZER_CREATED("recognizerCreated"),
+        START_LISTENING("startListening"),
+        READY_FOR_SPEECH("readyForSpeech"),
+        BEGINNING_OF_SPEECH("beginningOfSpeech"),
+        FIRST_PARTIAL("firstPartialResult"),
+        STOP_REQUESTED("stopRequested"),
+        END_OF_SPEECH("endOfSpeech"),
+        RESULTS("results"),
+        FINISHED("finished");
+
+        final String key;
+
+        Mark(String key) {
+            this.key = key;
+        }
+    }
+
+    static final long UNSET = Long.MIN_VALUE;
+    static final int MARK_COUNT = Mark.values().length;
+
+    private final long[] sessionIds;
+    private final long[][] timestamps;
+    private int nextSlot = 0;
+    private long latestSessionId = -1;
+
+    SessionTimeline(int history) {
+        sessionIds = new long[history];
+        timestamps = new long[history][MARK_COUNT];
+        Arrays.fill(sessionIds, -1);
+    }
+
+    /**
+     * Claims a slot for a new session, evicting the oldest one, and records its {@link Mark#START}.
+     */
+    synchronized void begin(long sessionId, long nowNanos) {
+        int slot = nextSlot;
+        nextSlot = (nextSlot + 1) % sessionIds.length;
+        sessionIds[slot] = sessionId;
+        Arrays.fill(timestamps[slot], UNSET);
+        timestamps[slot][Mark.START.ordinal()] = nowNanos;
+        latestSessionId = sessionId;
+    }
+
+    /**
+     * Records {@code mark} for the session unless it was already recorded or the session is no longer
+     * kept.
+     *
+     * @return {@code true} when the mark was recorded
+     */
+    synchronized boolean mark(long sessionId, Mark mark, long nowNanos) {
+        int slot = slotOf(sessionId);
+        if (slot < 0 || timestamps[slot][mark.ordinal()] != UNSET) {
+            return false;
+        }
+        timestamps[slot][mark.ordinal()] = nowNanos;
+        return true;
+    }
+
+    /**
+     * Returns the recorded timestamp of {@code mark}, or {@link #UNSET}.
+     */
+    synchronized long timestamp(long sessionId, Mark mark) {
+        int slot = slotOf(sessionId);
+        return slot < 0 ? UNSET : timestamps[slot][mark.ordinal()];
+    }
+
+    synchronized long getLatestSessionId() {
+        return latestSessionId;
+    }
+
+    /**
+     * Returns the timestamps of the session indexed by {@link Mark#ordinal()}, with {@link #UNSET} for
+     * milestones that were not reached, or {@code null} when the session is no longer kept.
+     */
+    synchronized long[] get(long sessionId) {
+        int slot = slotOf(sessionId);
+        return slot < 0 ? null : timestamps[slot].clone();
+    }
+
+    private int slotOf(long sessionId) {
+        if (sessionId < 0) {
+            return -1;
+        }
+        for (int i = 0; i < sessionIds.length; i++) {
+            if (sessionIds[i] == sessionId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,155 @@
+package app.capgo.speechrecognition;
+
+import java.util.Arrays;
+
+/**
+ * Finds chunk boundaries in a 16-bit little-endian PCM stream so long recordings can be transcribed
+ * in independent pieces without cutting through words.
+ *
+ * The stream is fed once, in any buffer sizes. Energy is measured over 20 ms windows; a run of windows
+ * below the threshold that lasts at least {@code minSilenceMs} is a pause. Once a chunk reaches
+ * {@code maxChunkMs} it is cut in the middle of the longest pause that leaves at least
+ * {@code minChunkMs} before it, or at the maximum length when there is no such pause.
+ */
+final class SilenceSplitter {
+
+    private static final int WINDOWS_PER_SECOND = 50;
+    private static final double FULL_SCALE = 32768.0;
+
+    private final int channels;
+    private final int bytesPerFrame;
+    private final int windowFrames;
+    private final long minChunkFrames;
+    private final long maxChunkFrames;
+    private final long minSilenceFrames;
+    private final double thresholdMeanSquare;
+
+    private long[] boundaries = new long[16];
+    private int boundaryCount = 0;
+
+    private long frame = 0;
+    private int windowSamples = 0;
+    private double windowSumSquares = 0;
+    private int carry = -1;
+
+    private long chunkStart = 0;
+    private long silenceStart = -1;
+    private long bestCut = -1;
+    private long bestCutSilence = 0;
+
+    SilenceSplitter(int sampleRate, int channels, int minChunkMs, int maxChunkMs, int minSilenceMs, double thresholdDb) {
+        this.channels = Math.max(1, channels);
+        this.bytesPerFrame = this.channels * 2;
+        this.windowFrames = Math.max(1, sampleRate / WINDOWS_PER_SECOND);
+        this.minChunkFrames = (long) sampleRate * minChunkMs / 1000;
+        this.maxChunkFrames = Math.max(windowFrames, (long) sampleRate * maxChunkMs / 1000);
+        this.minSilenceFrames = (long) sampleRate * minSilenceMs / 1000;
+        double threshold = FULL_SCALE * Math.pow(10, thresholdDb / 20);
+        this.thresholdMeanSquare = threshold * threshold;
+        boundaries[boundaryCount++] = 0;
+    }
+
+    /**
+     * Scans {@code length} bytes of PCM starting at {@code offset}.
+     */
+    void feed(byte[] buffer, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        if (carry >= 0 && i < end) {
+            addSample((short) (carry | (buffer[i] << 8)));
+            carry = -1;
+            i++;
+        }
+        for (; i + 1 < end; i += 2) {
+            addSample((short) ((buffer[i] & 0xFF) | (buffer[i + 1] << 8)));
+        }
+        if (i < end) {
+            carry = buffer[i] & 0xFF;
+        }
+    }
+
+    /**
+     * Returns the chunk boundaries as byte offsets into the PCM data: {@code 0}, every cut, and the end
+     * of the data, so chunk {@code i} spans {@code [result[i], result[i + 1])}.
+     */
+    long[] finish() {
+        long end = frame;
+        if (end > boundaries[boundaryCount - 1]) {
+            addBoundary(end);
+        }
+        long[] offsets = Arrays.copyOf(boundaries, boundaryCount);
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] *= bytesPerFrame;
+        }
+        return offsets;
+    }
+
+    /**
+     * Maps boundaries found in a mono 16-bit rendering of a source, at the source's own rate, back to
+     * byte offsets in the source data with {@code sourceBytesPerFrame} bytes per frame. Rewrites
+     * {@code boundaries} in place and returns it.
+     */
+    static long[] toSourceOffsets(long[] boundaries, int sourceBytesPerFrame) {
+        for (int i = 0; i < boundaries.length; i++) {
+            boundaries[i] = boundaries[i] / 2 * sourceBytesPerFrame;
+        }
+        return boundaries;
+    }
+
+    private void addSample(short sample) {
+        windowSumSquares += (double) sample * sample;
+        windowSamples++;
+        if (windowSamples % channels == 0) {
+            frame++;
+            if (windowSamples == windowFrames * channels) {
+                closeWindow();
+            }
+        }
+    }
+
+    private void closeWindow() {
+        long windowStart = frame - windowFrames;
+        boolean silent = windowSumSquares / windowSamples < thresholdMeanSquare;
+        windowSumSquares = 0;
+        windowSamples = 0;
+
+        if (silent) {
+            if (silenceStart < 0) {
+                silenceStart = windowStart;
+            }
+        } else if (silenceStart >= 0) {
+            considerPause(silenceStart, windowStart);
+            silenceStart = -1;
+        }
+
+        if (frame - chunkStart >= maxChunkFrames) {
+            if (silenceStart >= 0) {
+                considerPause(silenceStart, frame);
+            }
+            long cut = bestCut >= 0 ? bestCut : frame;
+            addBoundary(cut);
+            chunkStart = cut;
+            bestCut = -1;
+            bestCutSilence = 0;
+            if (silenceStart >= 0 && silenceStart < cut) {
+                silenceStart = cut;
+            }
+        }
+    }
+
+    private void considerPause(long start, long end) {
+        long length = end - start;
+        long middle = start + length / 2;
+        if (length >= minSilenceFrames && middle - chunkStart >= minChunkFrames && length >= bestCutSilence) {
+            bestCut = middle;
+            bestCutSilence = length;
+        }
+    }
+
+    private void addBoundary(long boundary) {
+        if (boundaryCount == boundaries.length) {
+            boundaries = Arrays.copyOf(boundaries, boundaryCount * 2);
+        }
+        boundaries[boundaryCount++] = boundary;
+    }
+}
@@ -0,0 +1,215 @@
+package app.capgo.speechrecognition;
+
+/**
+ * Accumulated transcript of a session: an append-only run of finalized segments plus a mutable tail
+ * holding the current hypothesis.
+ *
+ * Segments are stored once, joined by single spaces, and the joined forms are cached so repeated
+ * reads do not copy the whole transcript. With a maximum length set, the oldest segments are dropped
+ * once the finalized text outgrows it, so long-running sessions keep a bounded footprint; with a
+ * {@link TranscriptSpillFile} attached, dropped segments are written there instead of being lost. Not
+ * thread-safe: every call is made while holding the plugin lock.
+ */
+class TranscriptBuffer {
+
+    private final StringBuilder text = new StringBuilder();
+    private int[] segmentEnds = new int[16];
+    private int segmentCount = 0;
+    private int maxLength = 0;
+    private int droppedLength = 0;
+    private TranscriptSpillFile spill;
+    private String tail = "";
+    private String textCache = "";
+    private String currentTextCache = "";
+    private boolean textCacheValid = true;
+    private boolean currentTextCacheValid = true;
+
+    /**
+     * Appends a finalized segment. Blank segments are ignored.
+     */
+    void append(String segment) {
+        if (segment == null) {
+            return;
+        }
+        String trimmed = segment.trim();
+        if (trimmed.isEmpty()) {
+            return;
+        }
+
+        if (text.length() > 0) {
+            text.append(' ');
+        }
+        text.append(trimmed);
+        if (segmentCount == segmentEnds.length) {
+            int[] grown = new int[segmentEnds.length * 2];
+            System.arraycopy(segmentEnds, 0, grown, 0, segmentCount);
+            segmentEnds = grown;
+        }
+        segmentEnds[segmentCount++] = text.length();
+        dropOldestSegmentsIfNeeded();
+        textCacheValid = false;
+        currentTextCacheValid = false;
+    }
+
+    /**
+     * Limits the finalized text to about {@code maxLength} characters by dropping the oldest segments;
+     * the latest segment is always kept. {@code 0} disables the limit.
+     */
+    void setMaxLength(int maxLength) {
+        this.maxLength = Math.max(0, maxLength);
+    }
+
+    /**
+     * Attaches the file that receives segments dropped from memory, or detaches it with {@code null}.
+     */
+    void setSpill(TranscriptSpillFile spill) {
+        this.spill = spill;
+    }
+
+    TranscriptSpillFile getSpill() {
+        return spill;
+    }
+
+    /**
+     * Queues the finalized text still held in memory for the spill file, so the file holds the whole
+     * finalized transcript and its length matches {@link #length()}. The tail is left out, like
+     * everywhere else offsets are counted. Does nothing without a spill file.
+     */
+    void spillRemaining() {
+        if (spill == null) {
+            return;
+        }
+        spill.append(text, 0, text.length());
+    }
+
+    /**
+     * Finalized text in {@code [start, end)}, offsets measured like {@link #length()}, limited to the
+     * part still held in memory.
+     */
+    String textBetween(int start, int end) {
+        int from = Math.max(0, start - droppedLength);
+        int to = Math.min(text.length(), end - droppedLength);
+        return from < to ? text.substring(from, to) : "";
+    }
+
+    /**
+     * Length of the finalized text that has been dropped from memory.
+     */
+    int getDroppedLength() {
+        return droppedLength;
+    }
+
+    private void dropOldestSegmentsIfNeeded() {
+        if (maxLength == 0 || text.length() <= maxLength) {
+            return;
+        }
+        int dropped = 0;
+        int removed = 0;
+        while (dropped < segmentCount - 1 && text.length() - removed > maxLength) {
+            removed = segmentEnds[dropped] + 1;
+            dropped++;
+        }
+        if (dropped == 0) {
+            return;
+        }
+
+        if (spill != null) {
+            spill.append(text, 0, removed);
+        }
+        text.delete(0, removed);
+        segmentCount -= dropped;
+        for (int i = 0; i < segmentCount; i++) {
+            segmentEnds[i] = segmentEnds[i + dropped] - removed;
+        }
+        droppedLength += removed;
+    }
+
+    /**
+     * Replaces the mutable tail, i.e. the hypothesis that has not been finalized yet.
+     */
+    void setTail(String hypothesis) {
+        String trimmed = hypothesis == null ? "" : hypothesis.trim();
+        if (!trimmed.equals(tail)) {
+            tail = trimmed;
+            currentTextCacheValid = false;
+        }
+    }
+
+    /**
+     * Empties the transcript, including the attached spill file.
+     */
+    void clear() {
+        if (spill != null) {
+            spill.truncate();
+        }
+        text.setLength(0);
+        segmentCount = 0;
+        droppedLength = 0;
+        tail = "";
+        textCache = "";
+        currentTextCache = "";
+        textCacheValid = true;
+        currentTextCacheValid = true;
+    }
+
+    /**
+     * Length of the finalized text, without the tail, counting segments dropped by the maximum length
+     * so offsets stay valid while the head of the transcript is trimmed.
+     */
+    int length() {
+        return droppedLength + text.length();
+    }
+
+    boolean isEmpty() {
+        return text.length() == 0;
+    }
+
+    int getSegmentCount() {
+        return segmentCount;
+    }
+
+    String getSegment(int index) {
+        int start = index == 0 ? 0 : segmentEnds[index - 1] + 1;
+        return text.substring(start, segmentEnds[index]);
+    }
+
+    /**
+     * Finalized segments joined by spaces, without the tail.
+     */
+    String text() {
+        if (!textCacheValid) {
+            textCache = text.toString();
+            textCacheValid = true;
+        }
+        return textCache;
+    }
+
+    /**
+     * Finalized text from {@code offset} onward, where offsets are measured like {@link #length()}.
+     * Costs time proportional to the returned text only.
+     */
+    String textFrom(int offset) {
+        int retainedOffset = offset - droppedLength;
+        if (retainedOffset <= 0) {
+            return text();
+        }
+        return text.substring(Math.min(retainedOffset, text.length()));
+    }
+
+    /**
+     * Finalized text followed by the tail.
+     */
+    String currentText() {
+        if (!currentTextCacheValid) {
+            if (tail.isEmpty()) {
+                currentTextCache = text();
+            } else if (text.length() == 0) {
+                currentTextCache = tail;
+            } else {
+                currentTextCache = text() + " " + tail;
+            }
+            currentTextCacheValid = true;
+        }
+        return currentTextCache;
+    }
+}
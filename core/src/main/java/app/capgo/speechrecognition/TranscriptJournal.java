@@ -0,0 +1,371 @@
+package app.capgo.speechrecognition;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Crash-safe journal of the running session's transcript: finalized segments and checkpoints of the
+ * current partial hypothesis, appended to a memory-mapped file.
+ *
+ * Writes to a shared mapping reach the page cache immediately, so the journal survives the process
+ * being killed without an fsync per record. Callers only queue records, while holding the plugin
+ * lock; a background thread writes them in batches every {@code flushIntervalMs}, and partial
+ * checkpoints queued within one batch collapse into the latest one.
+ *
+ * File layout: a header ({@link #MAGIC}, version) followed by records of
+ * {@code [int size][int crc32][byte type][payload]}, where {@code size} counts the type byte and the
+ * payload. A zero {@code size} ends the journal; {@link #recover} also stops at the first record whose
+ * checksum does not match, which is how a write torn by process death is detected.
+ */
+final class TranscriptJournal {
+
+    static final class Recovered {
+
+        final long sessionId;
+        final long startedAt;
+        final String text;
+        final String partial;
+        final int segmentCount;
+
+        Recovered(long sessionId, long startedAt, String text, String partial, int segmentCount) {
+            this.sessionId = sessionId;
+            this.startedAt = startedAt;
+            this.text = text;
+            this.partial = partial;
+            this.segmentCount = segmentCount;
+        }
+    }
+
+    private static final int MAGIC = 0x53524a31;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int INITIAL_SIZE = 64 * 1024;
+
+    private static final byte TYPE_BEGIN = 1;
+    private static final byte TYPE_SEGMENT = 2;
+    private static final byte TYPE_PARTIAL = 3;
+    private static final byte TYPE_CLEAR = 4;
+    private static final byte TYPE_END = 5;
+
+    private static final class Record {
+
+        final byte type;
+        final String text;
+        final long sessionId;
+        final long startedAt;
+
+        Record(byte type, String text, long sessionId, long startedAt) {
+            this.type = type;
+            this.text = text;
+            this.sessionId = sessionId;
+            this.startedAt = startedAt;
+        }
+    }
+
+    private final File file;
+    private final long flushIntervalMs;
+    private final ScheduledThreadPoolExecutor writer = new ScheduledThreadPoolExecutor(1, (runnable) -> {
+        Thread thread = new Thread(runnable, "SpeechTranscriptJournal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Guarded by this.
+    private ArrayList<Record> pending = new ArrayList<>();
+    private String pendingPartial;
+    private boolean flushScheduled = false;
+
+    // Owned by the writer thread.
+    private ArrayList<Record> writing = new ArrayList<>();
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private int position = HEADER_SIZE;
+    private String writtenPartial;
+    private boolean failed = false;
+    private final CRC32 crc = new CRC32();
+
+    TranscriptJournal(File file, long flushIntervalMs) {
+        this.file = file;
+        this.flushIntervalMs = flushIntervalMs;
+        // close() flushes everything itself, so batches still waiting for their interval can be dropped.
+        writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Starts a new journal for {@code sessionId}, discarding the previous one.
+     */
+    synchronized void begin(long sessionId, long startedAtMillis) {
+        pending.clear();
+        pendingPartial = null;
+        pending.add(new Record(TYPE_BEGIN, null, sessionId, startedAtMillis));
+        scheduleFlushLocked(0);
+    }
+
+    synchronized void appendSegment(String segment) {
+        String trimmed = segment == null ? "" : segment.trim();
+        if (trimmed.isEmpty()) {
+            return;
+        }
+        // A queued checkpoint is part of this segment now; writing it afterwards would duplicate it.
+        pendingPartial = null;
+        pending.add(new Record(TYPE_SEGMENT, trimmed, 0, 0));
+        scheduleFlushLocked(flushIntervalMs);
+    }
+
+    synchronized void checkpointPartial(String partial) {
+        pendingPartial = partial == null ? "" : partial.trim();
+        scheduleFlushLocked(flushIntervalMs);
+    }
+
+    /**
+     * Records that the transcript was cleared mid-session.
+     */
+    synchronized void clear() {
+        pendingPartial = null;
+        pending.add(new Record(TYPE_CLEAR, null, 0, 0));
+        scheduleFlushLocked(flushIntervalMs);
+    }
+
+    /**
+     * Marks the session as finished, so {@link #recover} no longer reports it.
+     */
+    synchronized void end() {
+        pendingPartial = null;
+        pending.add(new Record(TYPE_END, null, 0, 0));
+        execute(this::flushAndForce);
+    }
+
+    /**
+     * Writes what is still queued, closes the file and stops the writer thread. A session that did
+     * not {@link #end()} stays recoverable.
+     */
+    void close() {
+        execute(() -> {
+            flushAndForce();
+            map = null;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {}
+                channel = null;
+            }
+        });
+        writer.shutdown();
+    }
+
+    /**
+     * Waits for the writer thread to finish after {@link #close()}.
+     */
+    boolean awaitClosed(long timeoutMs) throws InterruptedException {
+        return writer.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleFlushLocked(long delayMs) {
+        if (flushScheduled) {
+            if (delayMs == 0) {
+                execute(this::flush);
+            }
+            return;
+        }
+        flushScheduled = true;
+        try {
+            writer.schedule(this::flush, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {}
+    }
+
+    private void execute(Runnable task) {
+        try {
+            writer.execute(task);
+        } catch (RejectedExecutionException ignored) {}
+    }
+
+    private void flushAndForce() {
+        flush();
+        if (map != null && !failed) {
+            map.force();
+        }
+    }
+
+    private void flush() {
+        String partial;
+        synchronized (this) {
+            ArrayList<Record> swap = writing;
+            writing = pending;
+            pending = swap;
+            partial = pendingPartial;
+            pendingPartial = null;
+            flushScheduled = false;
+        }
+
+        try {
+            for (Record record : writing) {
+                write(record);
+            }
+            if (partial != null && !partial.equals(writtenPartial)) {
+                writeRecord(TYPE_PARTIAL, partial.getBytes(StandardCharsets.UTF_8));
+                writtenPartial = partial;
+            }
+        } catch (IOException ex) {
+            failed = true;
+        } finally {
+            writing.clear();
+        }
+    }
+
+    private void write(Record record) throws IOException {
+        switch (record.type) {
+            case TYPE_BEGIN:
+                reset();
+                ByteBuffer payload = ByteBuffer.allocate(16);
+                payload.putLong(record.sessionId).putLong(record.startedAt);
+                writeRecord(TYPE_BEGIN, payload.array());
+                break;
+            case TYPE_SEGMENT:
+                writeRecord(TYPE_SEGMENT, record.text.getBytes(StandardCharsets.UTF_8));
+                writtenPartial = null;
+                break;
+            default:
+                writeRecord(record.type, new byte[0]);
+                writtenPartial = null;
+                break;
+        }
+    }
+
+    /**
+     * Empties the journal, shrinking the file back to its initial size.
+     */
+    private void reset() throws IOException {
+        if (channel == null) {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Unable to create " + parent);
+            }
+            channel = new RandomAccessFile(file, "rw").getChannel();
+        }
+        map = null;
+        channel.truncate(0);
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_SIZE);
+        map.putInt(0, MAGIC);
+        map.putInt(4, VERSION);
+        map.putInt(HEADER_SIZE, 0);
+        position = HEADER_SIZE;
+        writtenPartial = null;
+        failed = false;
+    }
+
+    private void writeRecord(byte type, byte[] payload) throws IOException {
+        if (map == null || failed) {
+            return;
+        }
+
+        int size = 1 + payload.length;
+        int end = position + RECORD_HEADER_SIZE + size;
+        if (end + 4 > map.capacity()) {
+            long capacity = map.capacity();
+            while (end + 4 > capacity) {
+                capacity *= 2;
+            }
+            if (capacity > Integer.MAX_VALUE) {
+                throw new IOException("Transcript journal is full");
+            }
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+
+        crc.reset();
+        crc.update(type);
+        crc.update(payload, 0, payload.length);
+
+        // Terminate first, then fill the record and publish its size last.
+        map.putInt(end, 0);
+        map.putInt(position + 4, (int) crc.getValue());
+        map.position(position + RECORD_HEADER_SIZE);
+        map.put(type).put(payload);
+        map.putInt(position, size);
+        position = end;
+    }
+
+    /**
+     * Reads the journal at {@code file} and returns its session, or {@code null} when there is no journal
+     * or the session finished normally.
+     */
+    static Recovered recover(File file) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return null;
+        }
+
+        try (RandomAccessFile access = new RandomAccessFile(file, "r"); FileChannel channel = access.getChannel()) {
+            ByteBuffer journal = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (journal.getInt(0) != MAGIC || journal.getInt(4) != VERSION) {
+                return null;
+            }
+
+            CRC32 crc = new CRC32();
+            StringBuilder text = new StringBuilder();
+            String partial = "";
+            long sessionId = -1;
+            long startedAt = 0;
+            int segmentCount = 0;
+            int position = HEADER_SIZE;
+            while (position + RECORD_HEADER_SIZE <= journal.limit()) {
+                int size = journal.getInt(position);
+                if (size <= 0 || position + RECORD_HEADER_SIZE + size > journal.limit()) {
+                    break;
+                }
+                byte[] record = new byte[size];
+                ByteBuffer view = journal.duplicate();
+                view.position(position + RECORD_HEADER_SIZE);
+                view.get(record);
+                crc.reset();
+                crc.update(record, 0, record.length);
+                if ((int) crc.getValue() != journal.getInt(position + 4)) {
+                    break;
+                }
+                position += RECORD_HEADER_SIZE + size;
+
+                switch (record[0]) {
+                    case TYPE_BEGIN:
+                        ByteBuffer begin = ByteBuffer.wrap(record, 1, 16);
+                        sessionId = begin.getLong();
+                        startedAt = begin.getLong();
+                        break;
+                    case TYPE_SEGMENT:
+                        if (text.length() > 0) {
+                            text.append(' ');
+                        }
+                        text.append(new String(record, 1, record.length - 1, StandardCharsets.UTF_8));
+                        segmentCount++;
+                        partial = "";
+                        break;
+                    case TYPE_PARTIAL:
+                        partial = new String(record, 1, record.length - 1, StandardCharsets.UTF_8);
+                        break;
+                    case TYPE_CLEAR:
+                        text.setLength(0);
+                        segmentCount = 0;
+                        partial = "";
+                        break;
+                    case TYPE_END:
+                        return null;
+                    default:
+                        break;
+                }
+            }
+
+            if (sessionId < 0) {
+                return null;
+            }
+            return new Recovered(sessionId, startedAt, text.toString(), partial, segmentCount);
+        }
+    }
+}
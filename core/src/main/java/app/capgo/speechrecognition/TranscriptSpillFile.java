@@ -0,0 +1,206 @@
+package app.capgo.speechrecognition;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Append-only file holding the finalized transcript segments that no longer fit in the in-memory
+ * window of a {@link TranscriptBuffer}.
+ *
+ * Text is stored as UTF-16BE, two bytes per {@code char}, so a transcript offset maps straight to a
+ * file position and any page can be read without scanning. Callers only queue writes, while holding
+ * the plugin lock; a background thread performs them in order. {@link #length} counts queued chars,
+ * and {@link #read} runs behind the writes queued before it, so it sees everything that length
+ * reported.
+ */
+final class TranscriptSpillFile implements Closeable {
+
+    private static final int BYTES_PER_CHAR = 2;
+
+    private final File file;
+    private final FileChannel channel;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor((runnable) -> {
+        Thread thread = new Thread(runnable, "SpeechTranscriptSpill");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile long length = 0;
+    private volatile boolean failed = false;
+
+    // Owned by the writer thread.
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(4096);
+    private long writtenLength = 0;
+
+    private TranscriptSpillFile(File file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    /**
+     * Creates {@code file}, or truncates it when it already exists.
+     */
+    static TranscriptSpillFile create(File file) throws IOException {
+        RandomAccessFile access = new RandomAccessFile(file, "rw");
+        try {
+            access.setLength(0);
+        } catch (IOException ex) {
+            access.close();
+            throw ex;
+        }
+        return new TranscriptSpillFile(file, access.getChannel());
+    }
+
+    /**
+     * Queues {@code text[start, end)} for appending. A failed write marks the file as failed instead
+     * of throwing, since the caller drops the text from memory either way.
+     */
+    void append(CharSequence text, int start, int end) {
+        int count = end - start;
+        if (count <= 0 || failed) {
+            return;
+        }
+        String chunk = text.subSequence(start, end).toString();
+        length += count;
+        execute(() -> write(chunk));
+    }
+
+    /**
+     * Discards everything written so far.
+     */
+    void truncate() {
+        length = 0;
+        execute(() -> {
+            try {
+                channel.truncate(0);
+                writtenLength = 0;
+                failed = false;
+            } catch (IOException ex) {
+                failed = true;
+            }
+        });
+    }
+
+    /**
+     * Number of chars appended so far, including those still queued.
+     */
+    long length() {
+        return length;
+    }
+
+    boolean isFailed() {
+        return failed;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Reads the chars in {@code [offset, end)} once the writes queued before this call are done. Blocks,
+     * so it must not be called on the main thread or while holding the plugin lock.
+     */
+    String read(long offset, long end) throws IOException {
+        if (end <= offset) {
+            return "";
+        }
+
+        Future<String> result;
+        try {
+            result = writer.submit(() -> readWritten(offset, end));
+        } catch (RejectedExecutionException ex) {
+            throw new IOException("The transcript spill file is closed.");
+        }
+        try {
+            return result.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading the transcript spill file.");
+        }
+    }
+
+    /**
+     * Closes the file once the queued writes are done.
+     */
+    @Override
+    public void close() {
+        execute(this::closeChannel);
+        writer.shutdown();
+    }
+
+    /**
+     * Closes and deletes the file, dropping nothing that is already queued before it.
+     */
+    void delete() {
+        execute(() -> {
+            closeChannel();
+            file.delete();
+        });
+        writer.shutdown();
+    }
+
+    private void execute(Runnable task) {
+        try {
+            writer.execute(task);
+        } catch (RejectedExecutionException ignored) {}
+    }
+
+    private void write(String chunk) {
+        if (failed) {
+            return;
+        }
+        int count = chunk.length();
+        if (writeBuffer.capacity() < count * BYTES_PER_CHAR) {
+            writeBuffer = ByteBuffer.allocate(Integer.highestOneBit(count * BYTES_PER_CHAR) << 1);
+        }
+        writeBuffer.clear();
+        CharBuffer chars = writeBuffer.asCharBuffer();
+        chars.append(chunk);
+        writeBuffer.limit(count * BYTES_PER_CHAR);
+
+        try {
+            long position = writtenLength * BYTES_PER_CHAR;
+            while (writeBuffer.hasRemaining()) {
+                position += channel.write(writeBuffer, position);
+            }
+            writtenLength += count;
+        } catch (IOException ex) {
+            failed = true;
+        }
+    }
+
+    private String readWritten(long offset, long end) throws IOException {
+        if (failed) {
+            throw new IOException("The transcript spill file could not be written.");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - offset) * BYTES_PER_CHAR);
+        long position = offset * BYTES_PER_CHAR;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("The transcript spill file is shorter than expected.");
+            }
+        }
+        buffer.flip();
+        return buffer.asCharBuffer().toString();
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+    }
+}
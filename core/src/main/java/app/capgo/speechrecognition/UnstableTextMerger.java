@@ -0,0 +1,49 @@
+package app.capgo.speechrecognition;
+
+import java.util.ArrayList;
+
+/**
+ * Appends the recognizer's {@code UNSTABLE_TEXT} extra to the top hypothesis, so partial results show
+ * the words the recognizer has heard but not committed to yet.
+ */
+final class UnstableTextMerger {
+
+    private UnstableTextMerger() {}
+
+    /**
+     * Returns {@code matches} with the unstable text appended to the first match, or {@code matches}
+     * itself when there is nothing to merge or the first match already ends with it.
+     */
+    static ArrayList<String> merge(ArrayList<String> matches, String unstableText) {
+        if (matches == null || matches.isEmpty() || unstableText == null) {
+            return matches;
+        }
+
+        String trimmedUnstable = unstableText.trim();
+        if (trimmedUnstable.isEmpty()) {
+            return matches;
+        }
+
+        String firstMatch = matches.get(0);
+        if (firstMatch == null) {
+            return matches;
+        }
+
+        String trimmedFirstMatch = firstMatch.trim();
+        if (trimmedFirstMatch.equals(trimmedUnstable) || endsWithWord(trimmedFirstMatch, trimmedUnstable)) {
+            return matches;
+        }
+
+        ArrayList<String> mergedMatches = new ArrayList<>(matches);
+        mergedMatches.set(0, trimmedFirstMatch + " " + trimmedUnstable);
+        return mergedMatches;
+    }
+
+    /**
+     * Same as {@code text.endsWith(" " + word)} without building the concatenated string.
+     */
+    private static boolean endsWithWord(String text, String word) {
+        int separator = text.length() - word.length() - 1;
+        return separator >= 0 && text.charAt(separator) == ' ' && text.endsWith(word);
+    }
+}
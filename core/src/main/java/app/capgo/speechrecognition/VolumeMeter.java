@@ -0,0 +1,75 @@
+package app.capgo.speechrecognition;
+
+/**
+ * Smooths {@code onRmsChanged} levels and keeps the most recent ones in a fixed float ring.
+ *
+ * The recognizer reports levels far more often than a level meter needs, so {@link #record} also
+ * decides when the next decimated {@code volumeChanged} event is due. Nothing is allocated per sample.
+ */
+class VolumeMeter {
+
+    private static final float SMOOTHING = 0.35f;
+
+    private final float[] levels;
+    private int writeIndex = 0;
+    private int count = 0;
+    private float smoothedLevel = 0f;
+    private boolean hasLevel = false;
+    private long emitIntervalMs = 0;
+    private long lastEmitAt = Long.MIN_VALUE;
+
+    VolumeMeter(int capacity) {
+        this.levels = new float[capacity];
+    }
+
+    /**
+     * Clears the history and sets how many events per second {@link #record} may request.
+     * A rate of {@code 0} never requests events.
+     */
+    synchronized void reset(int eventsPerSecond) {
+        writeIndex = 0;
+        count = 0;
+        smoothedLevel = 0f;
+        hasLevel = false;
+        emitIntervalMs = eventsPerSecond > 0 ? Math.max(1, 1000L / eventsPerSecond) : 0;
+        lastEmitAt = Long.MIN_VALUE;
+    }
+
+    /**
+     * Adds a raw level in dB.
+     *
+     * @return {@code true} when a decimated event should be emitted for this sample
+     */
+    synchronized boolean record(float rmsdB, long nowMs) {
+        smoothedLevel = hasLevel ? smoothedLevel + SMOOTHING * (rmsdB - smoothedLevel) : rmsdB;
+        hasLevel = true;
+        levels[writeIndex] = smoothedLevel;
+        writeIndex = (writeIndex + 1) % levels.length;
+        if (count < levels.length) {
+            count++;
+        }
+
+        if (emitIntervalMs == 0 || (lastEmitAt != Long.MIN_VALUE && nowMs - lastEmitAt < emitIntervalMs)) {
+            return false;
+        }
+        lastEmitAt = nowMs;
+        return true;
+    }
+
+    synchronized float getLevel() {
+        return smoothedLevel;
+    }
+
+    /**
+     * Returns up to {@code max} of the most recent smoothed levels, oldest first.
+     */
+    synchronized float[] getRecentLevels(int max) {
+        int size = Math.min(Math.max(0, max), count);
+        float[] recent = new float[size];
+        int start = (writeIndex - size + levels.length) % levels.length;
+        for (int i = 0; i < size; i++) {
+            recent[i] = levels[(start + i) % levels.length];
+        }
+        return recent;
+    }
+}
@@ -0,0 +1,144 @@
+package app.capgo.speechrecognition;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Format of a RIFF/WAVE stream, read up to the start of its {@code data} chunk so the stream can then
+ * be consumed as raw PCM.
+ */
+final class WavHeader {
+
+    static final int FORMAT_PCM = 1;
+    static final int FORMAT_IEEE_FLOAT = 3;
+    static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    /**
+     * Sample encoding: {@link #FORMAT_PCM} or {@link #FORMAT_IEEE_FLOAT}, resolved from the sub-format
+     * of {@link #FORMAT_EXTENSIBLE} files, or another WAVE format tag.
+     */
+    final int audioFormat;
+    final int channels;
+    final int sampleRate;
+    final int bitsPerSample;
+    /**
+     * Size of the {@code data} chunk in bytes, or {@code -1} when the writer left it unset (streamed
+     * recordings).
+     */
+    final long dataLength;
+
+    private WavHeader(int audioFormat, int channels, int sampleRate, int bitsPerSample, long dataLength) {
+        this.audioFormat = audioFormat;
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+        this.bitsPerSample = bitsPerSample;
+        this.dataLength = dataLength;
+    }
+
+    boolean isPcm16() {
+        return audioFormat == FORMAT_PCM && bitsPerSample == 16;
+    }
+
+    int bytesPerFrame() {
+        return channels * (bitsPerSample / 8);
+    }
+
+    /**
+     * Duration of the audio in milliseconds, or {@code -1} when the data length is unknown.
+     */
+    long durationMs() {
+        if (dataLength < 0 || sampleRate <= 0 || bytesPerFrame() <= 0) {
+            return -1;
+        }
+        return (dataLength / bytesPerFrame()) * 1000L / sampleRate;
+    }
+
+    /**
+     * Reads chunks from {@code input} until the {@code data} chunk and leaves the stream positioned at
+     * its first sample.
+     *
+     * @throws IOException when the stream is not a WAVE file or has no {@code fmt} chunk before its data
+     */
+    static WavHeader read(InputStream input) throws IOException {
+        byte[] buffer = new byte[24];
+        readFully(input, buffer, 12);
+        if (!tagEquals(buffer, 0, "RIFF") || !tagEquals(buffer, 8, "WAVE")) {
+            throw new IOException("Not a WAVE file.");
+        }
+
+        int audioFormat = -1;
+        int channels = 0;
+        int sampleRate = 0;
+        int bitsPerSample = 0;
+        while (true) {
+            readFully(input, buffer, 8);
+            long chunkLength = littleEndianInt(buffer, 4) & 0xFFFFFFFFL;
+            if (tagEquals(buffer, 0, "data")) {
+                if (audioFormat < 0) {
+                    throw new IOException("WAVE file has no fmt chunk before its data.");
+                }
+                long dataLength = chunkLength == 0 || chunkLength == 0xFFFFFFFFL ? -1 : chunkLength;
+                return new WavHeader(audioFormat, channels, sampleRate, bitsPerSample, dataLength);
+            }
+
+            if (tagEquals(buffer, 0, "fmt ") && chunkLength >= 16) {
+                readFully(input, buffer, 16);
+                audioFormat = littleEndianShort(buffer, 0);
+                channels = littleEndianShort(buffer, 2);
+                sampleRate = littleEndianInt(buffer, 4);
+                bitsPerSample = littleEndianShort(buffer, 14);
+                chunkLength -= 16;
+                if (audioFormat == FORMAT_EXTENSIBLE && chunkLength >= 24) {
+                    // cbSize, valid bits, channel mask, then a GUID starting with the actual format tag.
+                    readFully(input, buffer, 24);
+                    audioFormat = littleEndianShort(buffer, 8);
+                    chunkLength -= 24;
+                }
+            }
+            // Chunks are padded to an even length.
+            skipFully(input, chunkLength + (chunkLength & 1));
+        }
+    }
+
+    private static boolean tagEquals(byte[] buffer, int offset, String tag) {
+        for (int i = 0; i < 4; i++) {
+            if (buffer[offset + i] != tag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int littleEndianShort(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF) | ((buffer[offset + 1] & 0xFF) << 8);
+    }
+
+    private static int littleEndianInt(byte[] buffer, int offset) {
+        return littleEndianShort(buffer, offset) | (littleEndianShort(buffer, offset + 2) << 16);
+    }
+
+    private static void readFully(InputStream input, byte[] buffer, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = input.read(buffer, read, length - read);
+            if (count < 0) {
+                throw new EOFException("Truncated WAVE header.");
+            }
+            read += count;
+        }
+    }
+
+    private static void skipFully(InputStream input, long length) throws IOException {
+        while (length > 0) {
+            long skipped = input.skip(length);
+            if (skipped <= 0) {
+                if (input.read() < 0) {
+                    throw new EOFException("Truncated WAVE header.");
+                }
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package app.capgo.speechrecognition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * Applies delta {@code partialResults} events the way a JS client does and checks that its copy of the
+ * accumulated transcript stays in sync with the native one.
+ */
+public class PartialResultEventTest {
+
+    private final TranscriptBuffer transcript = new TranscriptBuffer();
+    private final PartialResultsDeltaEncoder encoder = new PartialResultsDeltaEncoder();
+    private String jsAccumulated = "";
+
+    @Test
+    public void appendedSegmentsAreSentAsSuffixes() throws Exception {
+        transcript.append("one two");
+        JSONObject first = sendPartial("three");
+        assertEquals(0, first.getInt("accumulatedOffset"));
+
+        transcript.append("three four");
+        JSONObject second = sendPartial("five");
+        assertEquals("one two".length(), second.getInt("accumulatedOffset"));
+        assertEquals("one two three four", jsAccumulated);
+    }
+
+    @Test
+    public void unchangedTranscriptIsNotResent() throws Exception {
+        transcript.append("one");
+        sendPartial("two");
+        JSONObject next = sendPartial("two three");
+        assertFalse(next.has("accumulatedOffset"));
+        assertFalse(next.has("accumulatedSuffix"));
+    }
+
+    @Test
+    public void segmentsDroppedBeforeBeingSentResetTheTranscript() throws Exception {
+        transcript.setMaxLength(20);
+        transcript.append("alpha beta");
+        sendPartial("gamma");
+        assertEquals("alpha beta", jsAccumulated);
+
+        // Between two partials the window drops text JS never received.
+        transcript.append("gamma delta");
+        transcript.append("epsilon zeta");
+        transcript.append("eta theta");
+        assertTrue(transcript.getDroppedLength() > "alpha beta".length());
+
+        JSONObject reset = sendPartial("iota");
+        assertEquals(0, reset.getInt("accumulatedOffset"));
+        assertEquals(transcript.text(), jsAccumulated);
+
+        transcript.append("kappa");
+        sendPartial("lambda");
+        assertEquals(transcript.text(), jsAccumulated);
+    }
+
+    @Test
+    public void segmentsDroppedAfterBeingSentKeepOffsetsRelativeToJs() throws Exception {
+        transcript.setMaxLength(25);
+        transcript.append("alpha beta");
+        sendPartial("gamma");
+        transcript.append("gamma delta");
+        sendPartial("epsilon");
+        assertEquals("alpha beta gamma delta", jsAccumulated);
+
+        // "alpha beta" is dropped from memory, but JS already holds it.
+        transcript.append("epsilon");
+        JSONObject next = sendPartial("zeta");
+        assertEquals("alpha beta ".length(), transcript.getDroppedLength());
+        assertEquals("alpha beta gamma delta".length(), next.getInt("accumulatedOffset"));
+        assertEquals("alpha beta gamma delta epsilon", jsAccumulated);
+    }
+
+    @Test
+    public void resyncAfterTrimKeepsOffsetsRelativeToTheSnapshot() throws Exception {
+        transcript.setMaxLength(25);
+        transcript.append("alpha beta");
+        sendPartial("gamma");
+        transcript.append("gamma delta");
+        sendPartial("epsilon");
+        transcript.append("epsilon");
+        assertEquals("alpha beta ".length(), transcript.getDroppedLength());
+
+        // getLastPartialResult: JS replaces its copy with the text still in memory.
+        encoder.resyncAccumulated(transcript.length(), transcript.getDroppedLength());
+        jsAccumulated = transcript.text();
+
+        transcript.append("zeta");
+        JSONObject next = sendPartial("eta");
+        assertEquals("gamma delta epsilon".length(), next.getInt("accumulatedOffset"));
+        assertEquals(transcript.text(), jsAccumulated);
+    }
+
+    @Test
+    public void clearedTranscriptStartsOver() throws Exception {
+        transcript.append("one two three");
+        sendPartial("four");
+        transcript.clear();
+        encoder.resetAccumulated();
+        transcript.append("five");
+        JSONObject next = sendPartial("six");
+        assertEquals(0, next.getInt("accumulatedOffset"));
+        assertEquals("five", jsAccumulated);
+    }
+
+    @Test
+    public void restartEventsAdvanceTheSameDelta() throws Exception {
+        transcript.append("one");
+        sendPartial("two");
+        transcript.append("two");
+        JSONObject restart = apply(PartialResultEvent.restart(Collections.singletonList("two"), transcript, encoder));
+        assertTrue(restart.getBoolean("isRestarting"));
+        assertEquals("two", restart.getJSONArray("matches").getString(0));
+        assertEquals("one two", jsAccumulated);
+
+        JSONObject next = sendPartial("three");
+        assertFalse(next.has("accumulatedOffset"));
+    }
+
+    private JSONObject sendPartial(String hypothesis) throws Exception {
+        return apply(PartialResultEvent.delta(Collections.singletonList(hypothesis), transcript, encoder));
+    }
+
+    private JSONObject apply(PartialResultEvent event) throws Exception {
+        JSONObject payload = event.writeTo(new JSONObject());
+        if (payload.has("accumulatedOffset")) {
+            int offset = payload.getInt("accumulatedOffset");
+            jsAccumulated = jsAccumulated.substring(0, offset) + payload.getString("accumulatedSuffix");
+        }
+        return payload;
+    }
+}
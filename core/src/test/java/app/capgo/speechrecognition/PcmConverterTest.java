@@ -0,0 +1,160 @@
+package app.capgo.speechrecognition;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import org.junit.Test;
+
+public class PcmConverterTest {
+
+    private static final int TARGET_RATE = PcmConverter.TARGET_SAMPLE_RATE;
+
+    @Test
+    public void passesSixteenKilohertzMonoThroughByteForByte() {
+        byte[] input = new byte[10_000];
+        new Random(42).nextBytes(input);
+
+        byte[] output = convert(WavBytes.header(WavHeader.FORMAT_PCM, 1, TARGET_RATE, 16), input, 999, 512);
+
+        assertArrayEquals(input, output);
+    }
+
+    @Test
+    public void resamplingEmitsTheExpectedNumberOfFrames() {
+        for (int inputRate : new int[] { 44100, 48000 }) {
+            for (int inputFrames : new int[] { inputRate, inputRate + 7, 1 }) {
+                byte[] input = new byte[inputFrames * 2];
+                byte[] output = convert(WavBytes.header(WavHeader.FORMAT_PCM, 1, inputRate, 16), input, 4096, 1000);
+
+                long expected = ((long) inputFrames * TARGET_RATE + inputRate - 1) / inputRate;
+                assertEquals(inputRate + " Hz, " + inputFrames + " frames", expected * 2, output.length);
+            }
+        }
+    }
+
+    @Test
+    public void downsampledToneKeepsItsFrequencyAndAmplitude() {
+        int inputRate = 48000;
+        double frequency = 1000;
+        double amplitude = 10000;
+        ByteBuffer input = ByteBuffer.allocate(inputRate * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < inputRate; i++) {
+            input.putShort((short) Math.round(amplitude * Math.sin(2 * Math.PI * frequency * i / inputRate)));
+        }
+
+        short[] output = samples(convert(WavBytes.header(WavHeader.FORMAT_PCM, 1, inputRate, 16), input.array(), 4096, 4096));
+        assertEquals(TARGET_RATE, output.length);
+
+        // Skip the filter's edges and measure the middle half second.
+        int from = TARGET_RATE / 4;
+        int to = from + TARGET_RATE / 2;
+        int crossings = 0;
+        int peak = 0;
+        for (int i = from; i < to; i++) {
+            if ((output[i - 1] < 0) != (output[i] < 0)) {
+                crossings++;
+            }
+            peak = Math.max(peak, Math.abs(output[i]));
+        }
+        double measuredFrequency = crossings / 2.0 / 0.5;
+        assertEquals(frequency, measuredFrequency, 4);
+        assertEquals(amplitude, peak, amplitude * 0.02);
+    }
+
+    @Test
+    public void decodesEightBitUnsignedSamples() {
+        byte[] input = { (byte) 0x80, (byte) 0xFF, 0x00, (byte) 0xC0 };
+        short[] output = samples(convert(WavBytes.header(WavHeader.FORMAT_PCM, 1, TARGET_RATE, 8), input, 3, 64));
+        assertArrayEquals(new short[] { 0, 32512, -32768, 16384 }, output);
+    }
+
+    @Test
+    public void decodesTwentyFourBitSamples() {
+        byte[] input = {
+            0x00, 0x00, 0x40,
+            0x00, 0x00, (byte) 0x80,
+            (byte) 0xFF, (byte) 0xFF, 0x7F,
+            0x00, 0x01, 0x00,
+        };
+        short[] output = samples(convert(WavBytes.header(WavHeader.FORMAT_PCM, 1, TARGET_RATE, 24), input, 5, 64));
+        assertArrayEquals(new short[] { 16384, -32768, 32767, 1 }, output);
+    }
+
+    @Test
+    public void decodesThirtyTwoBitIntegerSamples() {
+        ByteBuffer input = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        input.putInt(0x40000000).putInt(Integer.MIN_VALUE).putInt(-0x10000);
+        short[] output = samples(convert(WavBytes.header(WavHeader.FORMAT_PCM, 1, TARGET_RATE, 32), input.array(), 7, 64));
+        assertArrayEquals(new short[] { 16384, -32768, -1 }, output);
+    }
+
+    @Test
+    public void decodesFloatSamplesAndClipsThem() {
+        ByteBuffer input = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        input.putFloat(0.5f).putFloat(-1f).putFloat(2f).putFloat(0f);
+        short[] output = samples(convert(WavBytes.header(WavHeader.FORMAT_IEEE_FLOAT, 1, TARGET_RATE, 32), input.array(), 6, 64));
+        assertArrayEquals(new short[] { 16384, -32768, 32767, 0 }, output);
+    }
+
+    @Test
+    public void averagesChannelsIntoMono() {
+        ByteBuffer input = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        input.putShort((short) 1000).putShort((short) 3000).putShort((short) -2000).putShort((short) 0);
+        short[] output = samples(convert(WavBytes.header(WavHeader.FORMAT_PCM, 2, TARGET_RATE, 16), input.array(), 3, 64));
+        assertArrayEquals(new short[] { 2000, -1000 }, output);
+    }
+
+    @Test
+    public void rejectsUnsupportedEncodings() {
+        assertFalse(PcmConverter.isSupported(WavBytes.header(WavHeader.FORMAT_PCM, 1, TARGET_RATE, 12)));
+        assertFalse(PcmConverter.isSupported(WavBytes.header(WavHeader.FORMAT_IEEE_FLOAT, 1, TARGET_RATE, 64)));
+        assertFalse(PcmConverter.isSupported(WavBytes.header(2, 1, TARGET_RATE, 4)));
+        assertTrue(PcmConverter.isSupported(WavBytes.header(WavHeader.FORMAT_PCM, 6, 8000, 24)));
+    }
+
+    /**
+     * Feeds {@code input} through a converter the way the file pump does, in reads of at most
+     * {@code readSize} bytes into an output buffer of {@code outputSize} bytes, then drains it.
+     */
+    private static byte[] convert(WavHeader header, byte[] input, int readSize, int outputSize) {
+        PcmConverter converter = new PcmConverter(header, TARGET_RATE);
+        ByteBuffer in = ByteBuffer.allocate(Math.max(readSize, converter.inputBytesPerFrame()) + converter.inputBytesPerFrame());
+        ByteBuffer out = ByteBuffer.allocate(outputSize);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        int offset = 0;
+        while (offset < input.length) {
+            int read = Math.min(Math.min(readSize, in.remaining()), input.length - offset);
+            in.put(input, offset, read);
+            offset += read;
+            in.flip();
+            do {
+                converter.convert(in, out);
+                drain(out, result);
+            } while (in.remaining() >= converter.inputBytesPerFrame());
+            in.compact();
+        }
+        boolean drained;
+        do {
+            drained = converter.finish(out);
+            drain(out, result);
+        } while (!drained);
+        return result.toByteArray();
+    }
+
+    private static void drain(ByteBuffer out, ByteArrayOutputStream result) {
+        result.write(out.array(), 0, out.position());
+        out.clear();
+    }
+
+    private static short[] samples(byte[] pcm) {
+        short[] samples = new short[pcm.length / 2];
+        ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(samples);
+        return samples;
+    }
+}
@@ -0,0 +1,134 @@
+package app.capgo.speechrecognition;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+
+public class SilenceSplitterTest {
+
+    private static final int RATE = 16000;
+    private static final int MIN_SILENCE_MS = 300;
+    private static final double THRESHOLD_DB = -40;
+
+    @Test
+    public void cutsInTheMiddleOfTheLongestPauseAfterTheMinimumChunk() {
+        // The longest pause (400-1600 ms) ends too early; the cut goes in the 4000-5000 ms pause rather
+        // than the shorter 2000-2400 ms one.
+        byte[] pcm = monoPcm(400, 1200, 400, 400, 1600, 1000, 5000);
+        SilenceSplitter splitter = new SilenceSplitter(RATE, 1, 2000, 6000, MIN_SILENCE_MS, THRESHOLD_DB);
+        splitter.feed(pcm, 0, pcm.length);
+
+        assertArrayEquals(new long[] { 0, bytes(4500), pcm.length }, splitter.finish());
+    }
+
+    @Test
+    public void cutsAtTheMaximumLengthWithoutAPause() {
+        byte[] pcm = monoPcm(13000);
+        SilenceSplitter splitter = new SilenceSplitter(RATE, 1, 1000, 5000, MIN_SILENCE_MS, THRESHOLD_DB);
+        splitter.feed(pcm, 0, pcm.length);
+
+        assertArrayEquals(new long[] { 0, bytes(5000), bytes(10000), pcm.length }, splitter.finish());
+    }
+
+    @Test
+    public void carriesOddBytesAcrossFeedCalls() {
+        byte[] pcm = monoPcm(1000, 1000, 600, 1500, 3000);
+        SilenceSplitter whole = new SilenceSplitter(RATE, 1, 1000, 3000, MIN_SILENCE_MS, THRESHOLD_DB);
+        whole.feed(pcm, 0, pcm.length);
+        long[] expected = whole.finish();
+        // Cuts in both pauses and one at the maximum length.
+        assertEquals(5, expected.length);
+
+        for (int size : new int[] { 1, 3, 333, 4097 }) {
+            SilenceSplitter pieces = new SilenceSplitter(RATE, 1, 1000, 3000, MIN_SILENCE_MS, THRESHOLD_DB);
+            for (int offset = 0; offset < pcm.length; offset += size) {
+                pieces.feed(pcm, offset, Math.min(size, pcm.length - offset));
+            }
+            assertArrayEquals("feeding " + size + " bytes at a time", expected, pieces.finish());
+        }
+    }
+
+    @Test
+    public void boundariesEndExactlyAtTheDataLength() {
+        // 7 ms past a whole number of 20 ms windows, so the last window never closes.
+        byte[] pcm = monoPcm(4007);
+        SilenceSplitter splitter = new SilenceSplitter(RATE, 1, 1000, 2000, MIN_SILENCE_MS, THRESHOLD_DB);
+        splitter.feed(pcm, 0, pcm.length);
+
+        long[] boundaries = splitter.finish();
+        assertEquals(pcm.length, boundaries[boundaries.length - 1]);
+        assertArrayEquals(new long[] { 0, bytes(2000), bytes(4000), pcm.length }, boundaries);
+    }
+
+    @Test
+    public void mapsCutsBackToStereoTwentyFourBitOffsets() {
+        byte[] mono = monoPcm(2500, 1000, 2500);
+        byte[] source = stereo24(mono);
+        WavHeader header = WavBytes.header(WavHeader.FORMAT_PCM, 2, RATE, 24);
+
+        // The same pipeline FileTranscriptionQueue.scanForPauses runs: mono 16-bit at the source rate.
+        SilenceSplitter splitter = new SilenceSplitter(RATE, 1, 1000, 5000, MIN_SILENCE_MS, THRESHOLD_DB);
+        PcmConverter converter = new PcmConverter(header, header.sampleRate);
+        ByteBuffer in = ByteBuffer.allocate(1000);
+        ByteBuffer out = ByteBuffer.allocate(1000);
+        for (int offset = 0; offset < source.length;) {
+            int read = Math.min(in.remaining(), source.length - offset);
+            in.put(source, offset, read);
+            offset += read;
+            in.flip();
+            do {
+                converter.convert(in, out);
+                splitter.feed(out.array(), 0, out.position());
+                out.clear();
+            } while (in.remaining() >= converter.inputBytesPerFrame());
+            in.compact();
+        }
+
+        long[] boundaries = SilenceSplitter.toSourceOffsets(splitter.finish(), header.bytesPerFrame());
+
+        assertArrayEquals(new long[] { 0, 3000L * RATE / 1000 * 6, source.length }, boundaries);
+    }
+
+    /**
+     * Mono 16-bit PCM alternating between a 440 Hz tone and silence, starting with the tone, with each
+     * segment lasting the given number of milliseconds.
+     */
+    private static byte[] monoPcm(int... segmentsMs) {
+        int frames = 0;
+        for (int ms : segmentsMs) {
+            frames += RATE * ms / 1000;
+        }
+        ByteBuffer pcm = ByteBuffer.allocate(frames * 2).order(ByteOrder.LITTLE_ENDIAN);
+        boolean tone = true;
+        int frame = 0;
+        for (int ms : segmentsMs) {
+            for (int i = 0; i < RATE * ms / 1000; i++, frame++) {
+                pcm.putShort(tone ? (short) Math.round(8000 * Math.sin(2 * Math.PI * 440 * frame / RATE)) : 0);
+            }
+            tone = !tone;
+        }
+        return pcm.array();
+    }
+
+    /**
+     * Widens mono 16-bit PCM to stereo 24-bit, with the same signal on both channels.
+     */
+    private static byte[] stereo24(byte[] mono) {
+        byte[] stereo = new byte[mono.length / 2 * 6];
+        for (int i = 0, o = 0; i < mono.length; i += 2) {
+            for (int channel = 0; channel < 2; channel++) {
+                stereo[o++] = 0;
+                stereo[o++] = mono[i];
+                stereo[o++] = mono[i + 1];
+            }
+        }
+        return stereo;
+    }
+
+    private static long bytes(int ms) {
+        return (long) RATE * ms / 1000 * 2;
+    }
+}
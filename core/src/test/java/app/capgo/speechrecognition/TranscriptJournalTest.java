@@ -0,0 +1,168 @@
+package app.capgo.speechrecognition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TranscriptJournalTest {
+
+    private static final long TIMEOUT_MS = 5000;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final byte TYPE_PARTIAL = 3;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "journal/transcript.journal");
+    }
+
+    @Test
+    public void recoversSegmentsAndTheLatestPartial() throws Exception {
+        TranscriptJournal journal = new TranscriptJournal(file, 10);
+        journal.begin(7, 1000);
+        journal.appendSegment(" hello ");
+        journal.appendSegment("world");
+        journal.checkpointPartial("again");
+        close(journal);
+
+        TranscriptJournal.Recovered recovered = TranscriptJournal.recover(file);
+        assertNotNull(recovered);
+        assertEquals(7, recovered.sessionId);
+        assertEquals(1000, recovered.startedAt);
+        assertEquals("hello world", recovered.text);
+        assertEquals("again", recovered.partial);
+        assertEquals(2, recovered.segmentCount);
+    }
+
+    @Test
+    public void endedSessionIsNotRecovered() throws Exception {
+        TranscriptJournal journal = new TranscriptJournal(file, 10);
+        journal.begin(1, 0);
+        journal.appendSegment("done");
+        journal.end();
+        close(journal);
+
+        assertNull(TranscriptJournal.recover(file));
+    }
+
+    @Test
+    public void clearMidSessionDropsEarlierSegments() throws Exception {
+        TranscriptJournal journal = new TranscriptJournal(file, 10);
+        journal.begin(1, 0);
+        journal.appendSegment("before");
+        journal.checkpointPartial("pending");
+        journal.clear();
+        journal.appendSegment("after");
+        close(journal);
+
+        TranscriptJournal.Recovered recovered = TranscriptJournal.recover(file);
+        assertEquals("after", recovered.text);
+        assertEquals("", recovered.partial);
+        assertEquals(1, recovered.segmentCount);
+    }
+
+    @Test
+    public void corruptedFinalRecordStopsRecoveryAtThePreviousOne() throws Exception {
+        writeTwoSegments();
+        int last = recordPositions().get(2);
+        try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+            long payload = last + RECORD_HEADER_SIZE + 1;
+            access.seek(payload);
+            int value = access.read();
+            access.seek(payload);
+            access.write(value ^ 0xff);
+        }
+
+        TranscriptJournal.Recovered recovered = TranscriptJournal.recover(file);
+        assertEquals("first", recovered.text);
+        assertEquals(1, recovered.segmentCount);
+    }
+
+    @Test
+    public void truncatedFinalRecordStopsRecoveryAtThePreviousOne() throws Exception {
+        writeTwoSegments();
+        int last = recordPositions().get(2);
+        try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+            access.setLength(last + RECORD_HEADER_SIZE + 2);
+        }
+
+        TranscriptJournal.Recovered recovered = TranscriptJournal.recover(file);
+        assertEquals("first", recovered.text);
+        assertEquals(1, recovered.segmentCount);
+    }
+
+    @Test
+    public void partialCheckpointsWithinOneBatchCollapse() throws Exception {
+        TranscriptJournal journal = new TranscriptJournal(file, 60_000);
+        journal.begin(1, 0);
+        // BEGIN is written right away; wait for it so the checkpoints below share one batch.
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (TranscriptJournal.recover(file) == null) {
+            assertTrue("BEGIN was not written", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+        journal.checkpointPartial("one");
+        journal.checkpointPartial("one two");
+        journal.checkpointPartial("one two three");
+        close(journal);
+
+        int partials = 0;
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        for (int position : recordPositions()) {
+            if (bytes[position + RECORD_HEADER_SIZE] == TYPE_PARTIAL) {
+                partials++;
+            }
+        }
+        assertEquals(1, partials);
+        assertEquals("one two three", TranscriptJournal.recover(file).partial);
+    }
+
+    private void writeTwoSegments() throws InterruptedException {
+        TranscriptJournal journal = new TranscriptJournal(file, 10);
+        journal.begin(1, 0);
+        journal.appendSegment("first");
+        journal.appendSegment("second");
+        close(journal);
+    }
+
+    private static void close(TranscriptJournal journal) throws InterruptedException {
+        journal.close();
+        assertTrue("The journal writer did not finish", journal.awaitClosed(TIMEOUT_MS));
+    }
+
+    /**
+     * Start offsets of the records in the journal, in order.
+     */
+    private List<Integer> recordPositions() throws IOException {
+        ByteBuffer journal = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        List<Integer> positions = new ArrayList<>();
+        int position = HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= journal.limit()) {
+            int size = journal.getInt(position);
+            if (size <= 0) {
+                break;
+            }
+            positions.add(position);
+            position += RECORD_HEADER_SIZE + size;
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,82 @@
+package app.capgo.speechrecognition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TranscriptSpillFileTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private TranscriptSpillFile spill;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.getRoot(), "spill.utf16");
+        spill = TranscriptSpillFile.create(file);
+    }
+
+    @After
+    public void tearDown() {
+        spill.close();
+    }
+
+    @Test
+    public void readsSeeQueuedAppends() throws IOException {
+        spill.append("hello world", 0, 5);
+        spill.append(" w\u00f6rld", 0, 6);
+        assertEquals(11, spill.length());
+        assertEquals("hello w\u00f6rld", spill.read(0, spill.length()));
+        assertEquals("w\u00f6rld", spill.read(6, 11));
+    }
+
+    @Test
+    public void truncateDiscardsQueuedText() throws IOException {
+        spill.append("old text", 0, 8);
+        spill.truncate();
+        assertEquals(0, spill.length());
+        spill.append("new", 0, 3);
+        assertEquals("new", spill.read(0, 3));
+    }
+
+    @Test
+    public void spilledTranscriptKeepsTheLengthOfTheFinalizedText() throws IOException {
+        TranscriptBuffer transcript = new TranscriptBuffer();
+        transcript.setMaxLength(8);
+        transcript.setSpill(spill);
+        transcript.append("first");
+        transcript.append("second");
+        transcript.append("third");
+        transcript.setTail("pending");
+        int length = transcript.length();
+        transcript.spillRemaining();
+        assertEquals(length, spill.length());
+        assertEquals("first second third", spill.read(0, length));
+    }
+
+    @Test
+    public void deleteRemovesTheFileAfterQueuedWrites() throws InterruptedException {
+        TranscriptBuffer transcript = new TranscriptBuffer();
+        transcript.setMaxLength(4);
+        transcript.setSpill(spill);
+        transcript.append("first");
+        transcript.append("second");
+        transcript.spillRemaining();
+        spill.delete();
+        assertThrows(IOException.class, () -> spill.read(0, 1));
+        for (int i = 0; i < 100 && file.exists(); i++) {
+            Thread.sleep(10);
+        }
+        assertFalse(file.exists());
+    }
+}
@@ -0,0 +1,108 @@
+package app.capgo.speechrecognition;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Builds RIFF/WAVE streams chunk by chunk for the tests.
+ */
+final class WavBytes {
+
+    private final ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+
+    /**
+     * A plain {@code fmt } chunk for the given encoding.
+     */
+    WavBytes fmt(int audioFormat, int channels, int sampleRate, int bitsPerSample) {
+        return chunk("fmt ", fmtBody(audioFormat, channels, sampleRate, bitsPerSample, 16).array());
+    }
+
+    /**
+     * A {@code WAVE_FORMAT_EXTENSIBLE} {@code fmt } chunk whose sub-format is {@code subFormat}.
+     */
+    WavBytes extensibleFmt(int subFormat, int channels, int sampleRate, int bitsPerSample) {
+        ByteBuffer body = fmtBody(WavHeader.FORMAT_EXTENSIBLE, channels, sampleRate, bitsPerSample, 40);
+        body.putShort((short) 22);
+        body.putShort((short) bitsPerSample);
+        body.putInt(channels == 1 ? 0x4 : 0x3);
+        body.putShort((short) subFormat);
+        // Rest of the KSDATAFORMAT_SUBTYPE GUID.
+        body.put(new byte[] { 0x00, 0x00, 0x00, 0x00, 0x10, 0x00, (byte) 0x80, 0x00, 0x00, (byte) 0xAA, 0x00, 0x38, (byte) 0x9B, 0x71 });
+        return chunk("fmt ", body.array());
+    }
+
+    /**
+     * A chunk with the given body, followed by the pad byte when its length is odd.
+     */
+    WavBytes chunk(String tag, byte[] body) {
+        header(tag, body.length);
+        chunks.write(body, 0, body.length);
+        if ((body.length & 1) != 0) {
+            chunks.write(0);
+        }
+        return this;
+    }
+
+    /**
+     * A {@code data} chunk whose header declares {@code declaredLength} bytes, followed by {@code samples}.
+     */
+    WavBytes data(int declaredLength, byte[] samples) {
+        header("data", declaredLength);
+        chunks.write(samples, 0, samples.length);
+        return this;
+    }
+
+    WavBytes data(byte[] samples) {
+        return data(samples.length, samples);
+    }
+
+    byte[] toByteArray() {
+        byte[] body = chunks.toByteArray();
+        ByteBuffer riff = ByteBuffer.allocate(12 + body.length).order(ByteOrder.LITTLE_ENDIAN);
+        riff.put(ascii("RIFF")).putInt(4 + body.length).put(ascii("WAVE")).put(body);
+        return riff.array();
+    }
+
+    ByteArrayInputStream toStream() {
+        return new ByteArrayInputStream(toByteArray());
+    }
+
+    /**
+     * Header of a PCM stream with an unset data length, for the converter tests.
+     */
+    static WavHeader header(int audioFormat, int channels, int sampleRate, int bitsPerSample) {
+        try {
+            return WavHeader.read(new WavBytes().fmt(audioFormat, channels, sampleRate, bitsPerSample).data(0, new byte[0]).toStream());
+        } catch (IOException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    private void header(String tag, int length) {
+        byte[] header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).put(ascii(tag)).putInt(length).array();
+        chunks.write(header, 0, header.length);
+    }
+
+    private static ByteBuffer fmtBody(int audioFormat, int channels, int sampleRate, int bitsPerSample, int length) {
+        int blockAlign = channels * bitsPerSample / 8;
+        ByteBuffer body = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        body.putShort((short) audioFormat);
+        body.putShort((short) channels);
+        body.putInt(sampleRate);
+        body.putInt(sampleRate * blockAlign);
+        body.putShort((short) blockAlign);
+        body.putShort((short) bitsPerSample);
+        return body;
+    }
+
+    private static byte[] ascii(String tag) {
+        byte[] bytes = new byte[tag.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) tag.charAt(i);
+        }
+        return bytes;
+    }
+}
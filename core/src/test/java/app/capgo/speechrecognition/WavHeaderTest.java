@@ -0,0 +1,98 @@
+package app.capgo.speechrecognition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import org.junit.Test;
+
+public class WavHeaderTest {
+
+    private static final byte[] SAMPLES = { 1, 2, 3, 4, 5, 6, 7, 8 };
+
+    @Test
+    public void readsAPlainPcmHeaderAndStopsAtTheFirstSample() throws IOException {
+        ByteArrayInputStream input = new WavBytes().fmt(WavHeader.FORMAT_PCM, 2, 44100, 16).data(SAMPLES).toStream();
+
+        WavHeader header = WavHeader.read(input);
+
+        assertEquals(WavHeader.FORMAT_PCM, header.audioFormat);
+        assertEquals(2, header.channels);
+        assertEquals(44100, header.sampleRate);
+        assertEquals(16, header.bitsPerSample);
+        assertEquals(SAMPLES.length, header.dataLength);
+        assertEquals(4, header.bytesPerFrame());
+        assertTrue(header.isPcm16());
+        assertEquals(1, input.read());
+    }
+
+    @Test
+    public void resolvesTheSubFormatOfExtensibleFiles() throws IOException {
+        ByteArrayInputStream input = new WavBytes()
+            .extensibleFmt(WavHeader.FORMAT_IEEE_FLOAT, 1, 48000, 32)
+            .data(SAMPLES)
+            .toStream();
+
+        WavHeader header = WavHeader.read(input);
+
+        assertEquals(WavHeader.FORMAT_IEEE_FLOAT, header.audioFormat);
+        assertEquals(1, header.channels);
+        assertEquals(48000, header.sampleRate);
+        assertEquals(32, header.bitsPerSample);
+        assertFalse(header.isPcm16());
+        assertEquals(1, input.read());
+    }
+
+    @Test
+    public void skipsThePadByteOfOddLengthChunks() throws IOException {
+        ByteArrayInputStream input = new WavBytes()
+            .chunk("LIST", new byte[] { 9, 9, 9 })
+            .fmt(WavHeader.FORMAT_PCM, 1, 16000, 16)
+            .chunk("junk", new byte[] { 9 })
+            .data(SAMPLES)
+            .toStream();
+
+        WavHeader header = WavHeader.read(input);
+
+        assertEquals(16000, header.sampleRate);
+        assertEquals(SAMPLES.length, header.dataLength);
+        assertEquals(1, input.read());
+    }
+
+    @Test
+    public void unsetDataLengthsAreReportedAsUnknown() throws IOException {
+        for (int declared : new int[] { 0, 0xFFFFFFFF }) {
+            WavHeader header = WavHeader.read(new WavBytes().fmt(WavHeader.FORMAT_PCM, 1, 16000, 16).data(declared, SAMPLES).toStream());
+            assertEquals(-1, header.dataLength);
+            assertEquals(-1, header.durationMs());
+        }
+    }
+
+    @Test
+    public void durationFollowsTheDataLength() throws IOException {
+        WavHeader header = WavHeader.read(new WavBytes().fmt(WavHeader.FORMAT_PCM, 2, 8000, 16).data(32000, new byte[0]).toStream());
+        assertEquals(1000, header.durationMs());
+    }
+
+    @Test
+    public void rejectsStreamsThatAreNotWave() {
+        byte[] bytes = new WavBytes().fmt(WavHeader.FORMAT_PCM, 1, 16000, 16).data(SAMPLES).toByteArray();
+        bytes[8] = 'A';
+        assertThrows(IOException.class, () -> WavHeader.read(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    public void rejectsDataBeforeTheFmtChunk() {
+        assertThrows(IOException.class, () -> WavHeader.read(new WavBytes().data(SAMPLES).toStream()));
+    }
+
+    @Test
+    public void rejectsTruncatedHeaders() {
+        byte[] bytes = new WavBytes().fmt(WavHeader.FORMAT_PCM, 1, 16000, 16).data(SAMPLES).toByteArray();
+        assertThrows(EOFException.class, () -> WavHeader.read(new ByteArrayInputStream(bytes, 0, 30)));
+    }
+}
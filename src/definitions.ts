@@ -83,6 +83,36 @@ export interface SpeechRecognitionStartOptions {
    * This restart behavior is implemented for Android inline recognition and iOS native recognition.
    */
   continuousPTT?: boolean;
+  /**
+   * Android only: restart held `continuousPTT` sessions on a second, already bound recognizer.
+   *
+   * The next recognizer is prepared while the current one is finalizing and starts listening as soon as
+   * the final results arrive, instead of after a fixed delay and a full recognizer rebuild. Compare
+   * `restartGap` and `gaplessRestartGap` from {@link SpeechRecognitionPlugin.getPerformanceStats} to
+   * measure the difference on a device.
+   *
+   * Requires `continuousPTT` or `continuousDictation`. Defaults to `false`.
+   */
+  gaplessRestart?: boolean;
+  /**
+   * Android only: hands-free dictation that keeps running until `stop()` or `forceStop()`, independent of
+   * the PTT button state. Meant for long sessions such as meeting notes.
+   *
+   * Recognition runs as a segmented session; every finalized segment is emitted as `segmentResults` and
+   * folded into the accumulated transcript, and a new session is started whenever the recognizer ends
+   * one. Restarts after silence back off exponentially up to 5 seconds and reset on the next speech.
+   *
+   * Cannot be combined with `continuousPTT` or `popup`. Requires `partialResults: true`. Defaults to `false`.
+   */
+  continuousDictation?: boolean;
+  /**
+   * Android only: upper bound, in characters, for the accumulated transcript kept in memory. Once it is
+   * exceeded the oldest segments move to an append-only file in app storage, readable through
+   * {@link SpeechRecognitionPlugin.getTranscript}; delta offsets keep counting from the start of the session.
+   *
+   * Defaults to 65536 with `continuousDictation` and to no limit otherwise. `0` disables the limit.
+   */
+  maxAccumulatedLength?: number;
   /**
    * Suppresses the Android system beep when inline recognition starts or restarts.
    *
@@ -93,6 +123,66 @@ export interface SpeechRecognitionStartOptions {
    * Defaults to `true` when `continuousPTT` is enabled.
    */
   muteRecognizerBeep?: boolean;
+  /**
+   * Android only: emit `partialResults` updates as deltas instead of full payloads.
+   *
+   * Interim updates then carry `seq`, `matchPrefixLength` / `matchSuffix` for the top hypothesis and
+   * `accumulatedOffset` / `accumulatedSuffix` for the accumulated transcript instead of `matches` and
+   * `accumulated`. Use {@link SpeechRecognitionPlugin.getLastPartialResult} to resync after a gap in `seq`.
+   *
+   * Requires `partialResults: true`. Defaults to `false`.
+   */
+  deltaPartialResults?: boolean;
+  /**
+   * Android only: upper bound on interim `partialResults` events per second.
+   *
+   * Updates arriving faster are collapsed natively and only the latest one is delivered once the
+   * interval has elapsed. Final and restart results are never delayed.
+   *
+   * Defaults to `0` (no limit).
+   */
+  maxPartialEventsPerSecond?: number;
+  /**
+   * Android only: rate in events per second at which smoothed microphone levels are emitted through
+   * the `volumeChanged` listener, for example `15`.
+   *
+   * Levels are smoothed and decimated natively from the recognizer's RMS callbacks.
+   * Defaults to `0` (no `volumeChanged` events).
+   */
+  volumeEventsPerSecond?: number;
+  /**
+   * Android only: keeps the last `captureAudioSeconds` seconds of recognizer audio in a native ring
+   * buffer so it can be saved with `saveCapturedAudio()`. Maximum `300`.
+   *
+   * Audio is only available when the recognizer service delivers it through `onBufferReceived`;
+   * many services never do, unless `audioSource` is set. Defaults to `0` (capture disabled).
+   */
+  captureAudioSeconds?: number;
+  /**
+   * Android 13+ only: record the microphone in the plugin with this source and stream the audio to the
+   * recognizer, instead of letting the recognizer service open the microphone.
+   *
+   * The microphone then stays open across continuous restarts, audio spoken between two recognizers is
+   * handed to the next one, and `captureAudioSeconds` records exactly what the recognizer hears.
+   * `unprocessed` falls back to `voiceRecognition` on devices that do not support it. Not supported
+   * with `popup`. Defaults to unset (the recognizer service owns the microphone).
+   */
+  audioSource?: 'voiceRecognition' | 'unprocessed' | 'mic' | 'voiceCommunication';
+  /**
+   * Android only: attaches the session's latency timeline as `metrics` to the `stopped`
+   * `listeningState` event. The same data is always available from `getSessionMetrics()`.
+   *
+   * Defaults to `false`.
+   */
+  includeSessionMetrics?: boolean;
+  /**
+   * Android only: journal finalized segments and periodic checkpoints of the partial result to a
+   * memory-mapped file, so the transcript survives the app process being killed. The unfinished session
+   * is returned by {@link SpeechRecognitionPlugin.recoverTranscript} after the next launch.
+   *
+   * Defaults to `true` with `continuousDictation` and to `false` otherwise.
+   */
+  journalTranscript?: boolean;
 }
 
 /**
@@ -121,6 +211,33 @@ export interface SpeechRecognitionPartialResultEvent {
    * `true` when the payload was emitted by `forceStop()`.
    */
   forced?: boolean;
+  /**
+   * Sequence number of this event within the session when `deltaPartialResults` is enabled.
+   */
+  seq?: number;
+  /**
+   * Number of leading characters kept from the previous top hypothesis when `deltaPartialResults` is enabled.
+   *
+   * The new top hypothesis is `previous.slice(0, matchPrefixLength) + matchSuffix`.
+   * The baseline is empty again after an `isRestarting` event.
+   */
+  matchPrefixLength?: number;
+  /**
+   * Text replacing the previous top hypothesis from `matchPrefixLength` onward.
+   */
+  matchSuffix?: string;
+  /**
+   * Offset into the accumulated transcript from which `accumulatedSuffix` applies when `deltaPartialResults` is enabled.
+   *
+   * The transcript is append-only, so this is normally the length already received. It drops to `0`
+   * when a new PTT hold clears the transcript, or when `maxAccumulatedLength` trimmed segments that
+   * were never received; the suffix then replaces the whole transcript held in JS.
+   */
+  accumulatedOffset?: number;
+  /**
+   * Text replacing the accumulated transcript from `accumulatedOffset` onward.
+   */
+  accumulatedSuffix?: string;
 }
 
 /**
@@ -130,6 +247,158 @@ export interface SpeechRecognitionSegmentResultEvent {
   matches: string[];
 }
 
+/**
+ * Raised at the rate configured by `volumeEventsPerSecond` (Android only).
+ */
+export interface SpeechRecognitionVolumeEvent {
+  /**
+   * Smoothed input level in dB as reported by the recognizer.
+   */
+  level: number;
+  sessionId: number;
+}
+
+/**
+ * Options for {@link SpeechRecognitionPlugin.transcribeFiles}.
+ */
+export interface TranscribeFilesOptions {
+  /**
+   * Absolute paths, `file://` or `content://` URIs of WAVE files: 8/16/24/32-bit PCM or 32-bit
+   * float, any sample rate and channel count. Audio is downmixed and resampled to 16 kHz mono
+   * while it streams to the recognizer.
+   */
+  files: string[];
+  /**
+   * Language tag for recognition. Defaults to the device locale.
+   */
+  language?: string;
+  /**
+   * Maximum number of alternatives reported in `lastMatches`. Defaults to 5.
+   */
+  maxResults?: number;
+  /**
+   * Number of files or chunks transcribed at the same time, each with its own recognizer, between 1
+   * and 4. Applies to the whole queue, including jobs queued earlier. Defaults to `1`.
+   */
+  concurrency?: number;
+  /**
+   * Prefer the on-device recognizer. Defaults to `false`.
+   */
+  useOnDeviceRecognition?: boolean;
+  /**
+   * Cut each file into chunks at pauses so the chunks of a long recording are transcribed in
+   * parallel (see `concurrency`) and stitched back together in order. Defaults to `false`.
+   */
+  splitAtSilence?: boolean;
+  /**
+   * With `splitAtSilence`, the longest chunk in seconds. Chunks are cut at the longest pause found
+   * after a third of this length, or at this length when there is no pause. At least 5, defaults to
+   * `30`.
+   */
+  maxChunkSeconds?: number;
+  /**
+   * With `splitAtSilence`, the level in dBFS below which audio counts as silence. Defaults to `-40`.
+   */
+  silenceThresholdDb?: number;
+}
+
+/**
+ * Result from {@link SpeechRecognitionPlugin.transcribeFiles}.
+ */
+export interface TranscribeFilesResult {
+  /**
+   * One job id per entry of `files`, in the same order.
+   */
+  jobIds: number[];
+}
+
+/**
+ * Raised when a file transcription job is queued, starts, and as its audio is fed to the recognizer.
+ */
+export interface FileTranscriptionProgressEvent {
+  jobId: number;
+  source: string;
+  state: 'queued' | 'running';
+  /**
+   * Share of the audio handed to the recognizer, from `0` to `1`.
+   */
+  progress: number;
+}
+
+/**
+ * Raised once per file transcription job when it finishes.
+ */
+export interface FileTranscriptionResultEvent {
+  jobId: number;
+  source: string;
+  status: 'success' | 'error';
+  /**
+   * Top hypotheses of every recognized segment, joined by spaces.
+   */
+  text?: string;
+  /**
+   * Alternatives reported for the last recognized segment.
+   */
+  lastMatches?: string[];
+  /**
+   * Duration of the audio in milliseconds, when the file declares its length.
+   */
+  durationMs?: number;
+  /**
+   * Number of chunks the file was transcribed in; `1` without `splitAtSilence`.
+   */
+  chunks: number;
+  /**
+   * Number of chunks that could not be transcribed. Their text is missing from `text`; the job only
+   * fails when every chunk failed.
+   */
+  failedChunks?: number;
+  errorCode?: string;
+  message?: string;
+}
+
+/**
+ * Options for {@link SpeechRecognitionPlugin.getRecentVolumeLevels}.
+ */
+export interface RecentVolumeLevelsOptions {
+  /**
+   * Maximum number of levels to return. Defaults to the full history (256 levels).
+   */
+  count?: number;
+}
+
+/**
+ * Result from {@link SpeechRecognitionPlugin.getRecentVolumeLevels}.
+ */
+export interface RecentVolumeLevels {
+  /**
+   * Smoothed levels in dB, oldest first, at the recognizer's native callback rate.
+   */
+  levels: number[];
+}
+
+/**
+ * Options for {@link SpeechRecognitionPlugin.saveCapturedAudio}.
+ */
+export interface SaveCapturedAudioOptions {
+  /**
+   * Number of most recent seconds to save. Defaults to everything held by the capture buffer.
+   */
+  seconds?: number;
+}
+
+/**
+ * Result from {@link SpeechRecognitionPlugin.saveCapturedAudio}.
+ */
+export interface CapturedAudio {
+  /**
+   * Absolute path of the written WAV file (16-bit mono PCM) in the app cache directory.
+   */
+  path: string;
+  durationMs: number;
+  sampleRate: number;
+}
+
 /**
  * Finite state values for the recognition session lifecycle.
  */
@@ -167,6 +436,108 @@ export interface SpeechRecognitionListeningEvent {
    * Backward-compatible binary state used by earlier releases.
    */
   status?: 'started' | 'stopped';
+  /**
+   * Latency timeline of the session, on the `stopped` event when `includeSessionMetrics` is enabled
+   * (Android only).
+   */
+  metrics?: SessionMetrics;
+}
+
+/**
+ * Options for {@link SpeechRecognitionPlugin.getSessionMetrics}.
+ */
+export interface SessionMetricsOptions {
+  /**
+   * Session to look up. Defaults to the most recent session. Only the last 8 sessions are kept.
+   */
+  sessionId?: number;
+}
+
+/**
+ * Milliseconds from `start()` to each milestone of a session. Milestones the session did not reach
+ * are omitted; repeated milestones (for example after a continuous PTT restart) keep their first
+ * occurrence.
+ */
+export interface SessionTimings {
+  start?: number;
+  recognizerCreated?: number;
+  startListening?: number;
+  readyForSpeech?: number;
+  beginningOfSpeech?: number;
+  firstPartialResult?: number;
+  stopRequested?: number;
+  endOfSpeech?: number;
+  results?: number;
+  finished?: number;
+}
+
+/**
+ * Latency timeline of one session, measured with a monotonic clock.
+ */
+export interface SessionMetrics {
+  sessionId: number;
+  timings: SessionTimings;
+}
+
+/**
+ * Options for {@link SpeechRecognitionPlugin.getPerformanceStats}.
+ */
+export interface PerformanceStatsOptions {
+  /**
+   * Clears the histograms after reading them. Defaults to `false`.
+   */
+  reset?: boolean;
+}
+
+/**
+ * Summary of one latency histogram, in milliseconds. Percentiles carry a relative error of about 6%.
+ */
+export interface LatencySummary {
+  count: number;
+  min: number;
+  max: number;
+  mean: number;
+  p50: number;
+  p90: number;
+  p95: number;
+  p99: number;
+}
+
+/**
+ * Latency statistics collected across sessions since the plugin was loaded.
+ */
+export interface PerformanceStats {
+  /**
+   * From `start()` to `onReadyForSpeech`.
+   */
+  timeToReady: LatencySummary;
+  /**
+   * From `start()` to the first partial result.
+   */
+  timeToFirstPartial: LatencySummary;
+  /**
+   * From `stop()` or `forceStop()` to the final results.
+   */
+  stopToFinal: LatencySummary;
+  /**
+   * From the end of one continuous PTT segment until the next recognizer is ready.
+   */
+  restartGap: LatencySummary;
+  /**
+   * Same as `restartGap`, for sessions started with `gaplessRestart`.
+   */
+  gaplessRestartGap: LatencySummary;
+  /**
+   * Time spent creating a native recognizer instance.
+   */
+  recognizerCreate: LatencySummary;
+  /**
+   * How often a session reused a pre-created recognizer.
+   */
+  recognizerPool: {
+    hits: number;
+    misses: number;
+  };
 }
 
 /**
@@ -195,6 +566,10 @@ export interface SpeechRecognitionMatches {
 
 export interface SpeechRecognitionLanguages {
   languages: string[];
+  /**
+   * Android only: the language the recognition service prefers, when it reports one.
+   */
+  languagePreference?: string;
 }
 
 export interface SpeechRecognitionListening {
@@ -215,6 +590,68 @@ export interface ForceStopOptions {
   timeout?: number;
 }
 
+/**
+ * Options for {@link SpeechRecognitionPlugin.getTranscript}.
+ */
+export interface TranscriptPageOptions {
+  /**
+   * Character offset to start reading from. Defaults to `0`.
+   */
+  offset?: number;
+  /**
+   * Maximum number of characters to return, at most 262144. Defaults to 16384.
+   */
+  limit?: number;
+}
+
+/**
+ * One page of the accumulated transcript.
+ */
+export interface TranscriptPage {
+  text: string;
+  /**
+   * Offset of `text` in the transcript.
+   */
+  offset: number;
+  /**
+   * Length of the finalized transcript; keep paging while `offset + text.length` is below it. The
+   * hypothesis still being recognized is never counted, during a session or after it ends, so the
+   * value only grows while a session runs.
+   */
+  totalLength: number;
+}
+
+/**
+ * Options for {@link SpeechRecognitionPlugin.recoverTranscript}.
+ */
+export interface RecoverTranscriptOptions {
+  /**
+   * Deletes the recovered transcript after reading it. Defaults to `false`.
+   */
+  discard?: boolean;
+}
+
+/**
+ * Transcript of a journaled session that did not finish because the app process died.
+ */
+export interface RecoveredTranscript {
+  available: boolean;
+  sessionId?: number;
+  /**
+   * Wall-clock start time of the session, in milliseconds since the epoch.
+   */
+  startedAt?: number;
+  /**
+   * Finalized segments joined by spaces.
+   */
+  text?: string;
+  /**
+   * Last checkpoint of the partial result that had not been finalized yet.
+   */
+  partial?: string;
+  segmentCount?: number;
+}
+
 /**
  * Result from {@link SpeechRecognitionPlugin.getLastPartialResult}.
  */
@@ -231,6 +668,17 @@ export interface LastPartialResult {
    * All current match alternatives when available.
    */
   matches?: string[];
+  /**
+   * Android only: sequence number of the last `partialResults` event when `deltaPartialResults` is enabled.
+   */
+  seq?: number;
+  /**
+   * Android only: accumulated transcript still held in memory when `deltaPartialResults` is enabled, for
+   * resyncing deltas. Once `maxAccumulatedLength` has trimmed the transcript this is only its most recent
+   * part, and the `accumulatedOffset` of the following events counts from the start of this text, so replace
+   * the local copy with it.
+   */
+  accumulated?: string;
 }
 
 /**
@@ -298,12 +746,46 @@ export interface SpeechRecognitionPlugin {
    * Gets the last cached partial transcription result.
    */
   getLastPartialResult(): Promise<LastPartialResult>;
+  /**
+   * Android only: reads a page of the finalized transcript, including segments spilled to disk by
+   * `maxAccumulatedLength`. After a session ends, its transcript stays readable until the next `start()`
+   * when `maxAccumulatedLength` is set.
+   */
+  getTranscript(options?: TranscriptPageOptions): Promise<TranscriptPage>;
+  /**
+   * Android only: returns the transcript of a `journalTranscript` session that was cut short by the app
+   * process dying. It stays available until it is discarded or another unfinished session replaces it.
+   */
+  recoverTranscript(options?: RecoverTranscriptOptions): Promise<RecoveredTranscript>;
+  /**
+   * Android 13+ only: queues recorded audio files for transcription without the microphone.
+   *
+   * Resolves once the files are queued. Follow them with the `fileTranscriptionProgress` and
+   * `fileTranscriptionResult` listeners.
+   */
+  transcribeFiles(options: TranscribeFilesOptions): Promise<TranscribeFilesResult>;
   /**
    * Updates the current push-to-talk button state.
    *
    * Use this together with `continuousPTT` or with a custom hold-to-talk flow.
    */
   setPTTState(options: PTTStateOptions): Promise<void>;
+  /**
+   * Android only: returns the most recent smoothed microphone levels of the current or last session in one batch.
+   */
+  getRecentVolumeLevels(options?: RecentVolumeLevelsOptions): Promise<RecentVolumeLevels>;
+  /**
+   * Android only: writes the most recent audio captured with `captureAudioSeconds` to a WAV file.
+   */
+  saveCapturedAudio(options?: SaveCapturedAudioOptions): Promise<CapturedAudio>;
+  /**
+   * Android only: returns the latency timeline of a recent session.
+   */
+  getSessionMetrics(options?: SessionMetricsOptions): Promise<SessionMetrics>;
+  /**
+   * Android only: returns latency histograms collected across sessions.
+   */
+  getPerformanceStats(options?: PerformanceStatsOptions): Promise<PerformanceStats>;
   /**
    * Gets the locales supported by the underlying recognizer.
    *
@@ -360,6 +842,29 @@ export interface SpeechRecognitionPlugin {
     eventName: 'error',
     listenerFunc: (event: SpeechRecognitionErrorEvent) => void,
   ): Promise<PluginListenerHandle>;
+  /**
+   * Listen for smoothed microphone level updates (Android only).
+   *
+   * Enable them with `volumeEventsPerSecond` when calling `start()`.
+   */
+  addListener(
+    eventName: 'volumeChanged',
+    listenerFunc: (event: SpeechRecognitionVolumeEvent) => void,
+  ): Promise<PluginListenerHandle>;
+  /**
+   * Listen for progress of jobs queued with `transcribeFiles()` (Android only).
+   */
+  addListener(
+    eventName: 'fileTranscriptionProgress',
+    listenerFunc: (event: FileTranscriptionProgressEvent) => void,
+  ): Promise<PluginListenerHandle>;
+  /**
+   * Listen for results of jobs queued with `transcribeFiles()` (Android only).
+   */
+  addListener(
+    eventName: 'fileTranscriptionResult',
+    listenerFunc: (event: FileTranscriptionResultEvent) => void,
+  ): Promise<PluginListenerHandle>;
   /**
    * Listen for the recognizer becoming ready for another session.
    */
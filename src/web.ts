@@ -1,9 +1,19 @@
 import { WebPlugin } from '@capacitor/core';
 
 import type {
+  CapturedAudio,
   ForceStopOptions,
   LastPartialResult,
   PTTStateOptions,
+  PerformanceStats,
+  PerformanceStatsOptions,
+  RecentVolumeLevels,
+  RecentVolumeLevelsOptions,
+  RecoverTranscriptOptions,
+  RecoveredTranscript,
+  SaveCapturedAudioOptions,
+  SessionMetrics,
+  SessionMetricsOptions,
   SpeechRecognitionAvailability,
   SpeechRecognitionLanguages,
   SpeechRecognitionListening,
@@ -11,6 +21,10 @@ import type {
   SpeechRecognitionPermissionStatus,
   SpeechRecognitionPlugin,
   SpeechRecognitionStartOptions,
+  TranscribeFilesOptions,
+  TranscribeFilesResult,
+  TranscriptPage,
+  TranscriptPageOptions,
 } from './definitions';
 
 export class SpeechRecognitionWeb extends WebPlugin implements SpeechRecognitionPlugin {
@@ -38,10 +52,38 @@ export class SpeechRecognitionWeb extends WebPlugin implements SpeechRecognition
     return { available: false, text: '' };
   }
 
+  getTranscript(_options?: TranscriptPageOptions): Promise<TranscriptPage> {
+    throw this.unimplemented('Speech recognition is not available on the web.');
+  }
+
+  transcribeFiles(_options: TranscribeFilesOptions): Promise<TranscribeFilesResult> {
+    throw this.unimplemented('Speech recognition is not available on the web.');
+  }
+
+  async recoverTranscript(_options?: RecoverTranscriptOptions): Promise<RecoveredTranscript> {
+    return { available: false };
+  }
+
   setPTTState(_options: PTTStateOptions): Promise<void> {
     throw this.unimplemented('Speech recognition is not available on the web.');
   }
 
+  getRecentVolumeLevels(_options?: RecentVolumeLevelsOptions): Promise<RecentVolumeLevels> {
+    throw this.unimplemented('Speech recognition is not available on the web.');
+  }
+
+  saveCapturedAudio(_options?: SaveCapturedAudioOptions): Promise<CapturedAudio> {
+    throw this.unimplemented('Speech recognition is not available on the web.');
+  }
+
+  getSessionMetrics(_options?: SessionMetricsOptions): Promise<SessionMetrics> {
+    throw this.unimplemented('Speech recognition is not available on the web.');
+  }
+
+  getPerformanceStats(_options?: PerformanceStatsOptions): Promise<PerformanceStats> {
+    throw this.unimplemented('Speech recognition is not available on the web.');
+  }
+
   getSupportedLanguages(): Promise<SpeechRecognitionLanguages> {
     throw this.unimplemented('Speech recognition is not available on the web.');
   }